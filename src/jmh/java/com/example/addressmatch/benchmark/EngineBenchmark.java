@@ -0,0 +1,70 @@
+package com.example.addressmatch.benchmark;
+
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.service.AddressParserService;
+import com.example.addressmatch.service.AddressTreeBuilder;
+import com.example.addressmatch.service.InvertedIndexMatchEngine;
+import com.example.addressmatch.service.MatchEngine;
+import com.example.addressmatch.service.MultiGranularityMatcher;
+import com.example.addressmatch.support.SyntheticAddressGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两种匹配引擎并排对比，表A 10万条，查询集（65536条，均为带噪声的表A变体，
+ * 精确地址索引命中的部分两者相同）依次轮换，不使用结果缓存。
+ * 召回率对比用 MatchThroughputHarness 加 -Dapp.match.engine=inverted 运行
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+
+    private static final int TABLE_A_SIZE = 100_000;
+    private static final int QUERY_COUNT = 65536;
+
+    @Param({MultiGranularityMatcher.NAME, InvertedIndexMatchEngine.NAME})
+    private String engineName;
+
+    private AddressTreeSnapshot.Lease lease;
+    private MatchEngine engine;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticAddressGenerator corpus = new SyntheticAddressGenerator(7);
+        List<String> tableA = corpus.referenceSet(TABLE_A_SIZE);
+        AddressParserService parser = new AddressParserService();
+        AddressTreeBuilder builder = Services.treeBuilder(parser);
+        lease = builder.buildAddressTree(Services.tableA(tableA));
+        engine = MultiGranularityMatcher.NAME.equals(engineName)
+                ? Services.matcher(parser, builder, 1, 1)
+                : Services.invertedEngine(builder);
+
+        queries = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            queries[i] = corpus.variant(tableA.get((i * 7919) % tableA.size()));
+        }
+        // 倒排索引在第一次匹配时构建，不计入测量
+        engine.matchAddress(queries[0], lease);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        lease.close();
+    }
+
+    @Benchmark
+    public List<MatchCandidate> match() {
+        String query = queries[next];
+        next = (next + 1) & (QUERY_COUNT - 1);
+        return engine.matchAddress(query, lease);
+    }
+}
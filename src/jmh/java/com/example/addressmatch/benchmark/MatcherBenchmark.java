@@ -0,0 +1,105 @@
+package com.example.addressmatch.benchmark;
+
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.service.AddressParserService;
+import com.example.addressmatch.service.AddressTreeBuilder;
+import com.example.addressmatch.service.MultiGranularityMatcher;
+import com.example.addressmatch.support.SyntheticAddressGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单条地址匹配，表A 10万条：
+ *   cacheHit  查询集（1024条）全部预先匹配过，只走规范化和缓存查找
+ *   cacheMiss 查询集（65536条）依次轮换，缓存容量为1，每次都解析并遍历地址树
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MatcherBenchmark {
+
+    private static final int TABLE_A_SIZE = 100_000;
+
+    @State(Scope.Benchmark)
+    public static class Tree {
+        AddressParserService parser;
+        AddressTreeBuilder builder;
+        AddressTreeSnapshot.Lease lease;
+        SyntheticAddressGenerator corpus;
+        List<String> tableA;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            corpus = new SyntheticAddressGenerator(7);
+            tableA = corpus.referenceSet(TABLE_A_SIZE);
+            parser = new AddressParserService();
+            builder = Services.treeBuilder(parser);
+            lease = builder.buildAddressTree(Services.tableA(tableA));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            lease.close();
+        }
+
+        /**
+         * 四分之三取自表A的变体，其余为新地址
+         */
+        String[] queries(int count) {
+            List<String> queries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                queries.add(i % 4 == 0 ? corpus.next() : corpus.variant(tableA.get((i * 7919) % tableA.size())));
+            }
+            return queries.toArray(new String[0]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Hit {
+        MultiGranularityMatcher matcher;
+        String[] queries;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Tree tree) {
+            matcher = Services.matcher(tree.parser, tree.builder, 0, 0);
+            queries = tree.queries(1024);
+            for (String query : queries) {
+                matcher.matchAddress(query, tree.lease);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Miss {
+        MultiGranularityMatcher matcher;
+        String[] queries;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Tree tree) {
+            matcher = Services.matcher(tree.parser, tree.builder, 1, 1);
+            queries = tree.queries(65536);
+        }
+    }
+
+    @Benchmark
+    public List<MatchCandidate> cacheHit(Tree tree, Hit state) {
+        String query = state.queries[state.next];
+        state.next = (state.next + 1) & (state.queries.length - 1);
+        return state.matcher.matchAddress(query, tree.lease);
+    }
+
+    @Benchmark
+    public List<MatchCandidate> cacheMiss(Tree tree, Miss state) {
+        String query = state.queries[state.next];
+        state.next = (state.next + 1) & (state.queries.length - 1);
+        return state.matcher.matchAddress(query, tree.lease);
+    }
+}
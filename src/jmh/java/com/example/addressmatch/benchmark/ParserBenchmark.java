@@ -0,0 +1,54 @@
+package com.example.addressmatch.benchmark;
+
+import com.example.addressmatch.service.AddressParserService;
+import com.example.addressmatch.support.SyntheticAddressGenerator;
+import com.example.addressmatch.util.CommonUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 地址清洗与解析：每次调用处理语料中的下一条地址（含备注、空白等变体）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    private static final int CORPUS_SIZE = 4096;
+
+    private final AddressParserService parser = new AddressParserService();
+    private String[] addresses;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticAddressGenerator corpus = new SyntheticAddressGenerator(17);
+        List<String> list = new ArrayList<>(CORPUS_SIZE);
+        for (String address : corpus.referenceSet(CORPUS_SIZE)) {
+            list.add(corpus.variant(address));
+        }
+        addresses = list.toArray(new String[0]);
+    }
+
+    private String nextAddress() {
+        String address = addresses[next];
+        next = (next + 1) & (CORPUS_SIZE - 1);
+        return address;
+    }
+
+    @Benchmark
+    public List<String> parseAddressComponents() {
+        return parser.parseAddressComponents(nextAddress());
+    }
+
+    @Benchmark
+    public String cleanAddress() {
+        return CommonUtils.cleanAddress(nextAddress());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.addressmatch.benchmark;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.service.AddressParserService;
+import com.example.addressmatch.service.AddressTreeBuilder;
+import com.example.addressmatch.service.InvertedIndexMatchEngine;
+import com.example.addressmatch.service.MatchMetrics;
+import com.example.addressmatch.service.MultiGranularityMatcher;
+import com.example.addressmatch.service.TreeShardStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 不启动Spring容器，手工装配被测服务（字段注入的依赖和配置通过反射设置）
+ */
+final class Services {
+
+    private Services() {
+    }
+
+    static AddressTreeBuilder treeBuilder(AddressParserService parser) {
+        AddressTreeBuilder builder = new AddressTreeBuilder();
+        set(builder, "addressParser", parser);
+        set(builder, "shardStore", new TreeShardStore());
+        return builder;
+    }
+
+    static MultiGranularityMatcher matcher(AddressParserService parser, AddressTreeBuilder builder,
+                                           long parseCacheSize, long matchCacheSize) {
+        MultiGranularityMatcher matcher = new MultiGranularityMatcher();
+        set(matcher, "addressParser", parser);
+        set(matcher, "metrics", metrics(builder));
+        set(matcher, "defaultMaxSize", 10000L);
+        set(matcher, "parseMaxSize", parseCacheSize);
+        set(matcher, "matchMaxSize", matchCacheSize);
+        set(matcher, "topKLimit", 20);
+        set(matcher, "relaxedMaxEdits", 2);
+        set(matcher, "relaxedBudgetMs", 3L);
+        set(matcher, "relaxedBeamWidth", 256);
+        matcher.initCaches();
+        return matcher;
+    }
+
+    static InvertedIndexMatchEngine invertedEngine(AddressTreeBuilder builder) {
+        InvertedIndexMatchEngine engine = new InvertedIndexMatchEngine();
+        set(engine, "metrics", metrics(builder));
+        set(engine, "topKLimit", 20);
+        set(engine, "seedPostings", 2000);
+        set(engine, "rerankSize", 64);
+        return engine;
+    }
+
+    private static MatchMetrics metrics(AddressTreeBuilder builder) {
+        MatchMetrics metrics = new MatchMetrics();
+        set(metrics, "registry", new SimpleMeterRegistry());
+        set(metrics, "treeBuilder", builder);
+        set(metrics, "slowThresholdMs", Long.MAX_VALUE);
+        metrics.init();
+        return metrics;
+    }
+
+    static List<TableA> tableA(List<String> addresses) {
+        List<TableA> rows = new ArrayList<>(addresses.size());
+        for (int i = 0; i < addresses.size(); i++) {
+            TableA row = new TableA();
+            row.setId((long) i + 1);
+            row.setAddressA(addresses.get(i));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static void set(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        if (field == null) {
+            throw new IllegalArgumentException(target.getClass().getSimpleName() + " 没有字段 " + name);
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.addressmatch.benchmark;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.service.AddressParserService;
+import com.example.addressmatch.service.AddressTreeBuilder;
+import com.example.addressmatch.support.SyntheticAddressGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全量构建地址树（解析、插入、冻结为紧凑树），每次调用构建一棵新树
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class TreeBuildBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int size;
+
+    private List<TableA> tableA;
+    private AddressTreeBuilder builder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tableA = Services.tableA(new SyntheticAddressGenerator(42).referenceSet(size));
+        builder = Services.treeBuilder(new AddressParserService());
+    }
+
+    @Benchmark
+    public long buildAddressTree() {
+        try (AddressTreeSnapshot.Lease tree = builder.buildAddressTree(tableA)) {
+            return tree.getVersion();
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package com.example.addressmatch.controller;
 
+import com.example.addressmatch.entity.MatchRun;
 import com.example.addressmatch.entity.TableD;
-import com.example.addressmatch.repository.TableDRepository;
+import com.example.addressmatch.model.MatchJob;
+import com.example.addressmatch.model.OnlineBatchMatchResult;
+import com.example.addressmatch.model.OnlineMatchRequest;
+import com.example.addressmatch.model.OnlineMatchResult;
 import com.example.addressmatch.service.AddressMatchService;
+import com.example.addressmatch.service.MatchConflictException;
+import com.example.addressmatch.service.MatchJobService;
+import com.example.addressmatch.service.OnlineMatchService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 @Slf4j
 @RestController
@@ -20,7 +29,10 @@ public class MatchController {
     private AddressMatchService addressMatchService;
 
     @Autowired
-    private TableDRepository tableDRepo;
+    private OnlineMatchService onlineMatchService;
+
+    @Autowired
+    private MatchJobService matchJobService;
 
 
     /**
@@ -31,7 +43,7 @@ public class MatchController {
         log.info("执行性能监控匹配");
 
         long startTime = System.currentTimeMillis();
-        addressMatchService.performSimpleMatch();
+        matchJobService.runNow();
         long endTime = System.currentTimeMillis();
 
         Map<String, Object> stats = addressMatchService.getSimpleStats();
@@ -45,25 +57,81 @@ public class MatchController {
      */
     @GetMapping("/match")
     public ResponseEntity<Map<String, Object>> runMatch() {
-        addressMatchService.performSimpleMatch();
+        matchJobService.runNow();
         return ResponseEntity.ok(addressMatchService.getSimpleStats());
     }
 
+    /**
+     * 提交异步匹配任务，返回任务ID；已有任务运行时返回409
+     */
+    @PostMapping("/match/jobs")
+    public ResponseEntity<MatchJob> submitMatchJob() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(matchJobService.submit());
+    }
+
+    /**
+     * 最近的匹配任务
+     */
+    @GetMapping("/match/jobs")
+    public ResponseEntity<List<MatchJob>> listMatchJobs() {
+        return ResponseEntity.ok(matchJobService.listJobs());
+    }
+
+    /**
+     * 匹配任务状态：阶段、已处理/总数、吞吐量
+     */
+    @GetMapping("/match/jobs/{id}")
+    public ResponseEntity<MatchJob> getMatchJob(@PathVariable long id) {
+        MatchJob job = matchJobService.getJob(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    /**
+     * 取消匹配任务（在下一个阶段或分块边界停止，本次结果版本作废，由后台清理）
+     */
+    @DeleteMapping("/match/jobs/{id}")
+    public ResponseEntity<MatchJob> cancelMatchJob(@PathVariable long id) {
+        MatchJob job = matchJobService.cancel(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.accepted().body(job);
+    }
+
+    /**
+     * 在线匹配单条地址，返回前K个候选；地址树尚未构建（启动时没有可用快照且未执行过批量匹配）时返回503
+     */
+    @PostMapping("/match-one")
+    public ResponseEntity<OnlineMatchResult> matchOne(@RequestBody OnlineMatchRequest request) {
+        if (!onlineMatchService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(onlineMatchService.matchOne(request.getAddress(), request.getTopK()));
+    }
+
+    /**
+     * 在线批量匹配，超出延迟预算的地址返回 SKIPPED；地址树尚未构建（启动时没有可用快照且未执行过批量匹配）时返回503
+     */
+    @PostMapping("/match-batch")
+    public ResponseEntity<OnlineBatchMatchResult> matchBatch(@RequestBody OnlineMatchRequest request) {
+        if (!onlineMatchService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(onlineMatchService.matchBatch(request.getAddresses(), request.getTopK()));
+    }
+
     /**
      * 获取表D数据（<95%的匹配）
      */
     @GetMapping("/table-d")
     public ResponseEntity<List<TableD>> getTableD() {
-        List<TableD> tableDList = tableDRepo.findByStatus("PENDING");
+        List<TableD> tableDList = addressMatchService.getPendingTableD();
         return ResponseEntity.ok(tableDList);
     }
 
     /**
-     * 表D地址添加到表A
+     * 表D地址添加到表A；已有匹配任务运行时返回409
      */
     @PostMapping("/d-to-a")
     public ResponseEntity<String> addDToA(@RequestBody List<Long> ids) {
-        int added = addressMatchService.addTableDToTableA(ids);
+        int added = matchJobService.addTableDToTableA(ids);
         return ResponseEntity.ok("已添加" + added + "个地址到表A");
     }
 
@@ -81,10 +149,36 @@ public class MatchController {
      */
     @PostMapping("/rematch")
     public ResponseEntity<String> rematch() {
-        addressMatchService.reMatchAll();
+        log.info("重新执行匹配...");
+        matchJobService.runNow();
         return ResponseEntity.ok("重新匹配完成");
     }
 
+    /**
+     * 结果版本列表
+     */
+    @GetMapping("/runs")
+    public ResponseEntity<List<MatchRun>> listRuns() {
+        return ResponseEntity.ok(addressMatchService.listRuns());
+    }
+
+    /**
+     * 回滚到上一个结果版本
+     */
+    @PostMapping("/runs/rollback")
+    public ResponseEntity<String> rollbackRun() {
+        MatchRun active = addressMatchService.rollbackRun();
+        return ResponseEntity.ok("已回滚到版本" + active.getId());
+    }
+
+    /**
+     * 地址树内存估算
+     */
+    @GetMapping("/tree/memory")
+    public ResponseEntity<Map<String, Object>> getTreeMemory() {
+        return ResponseEntity.ok(addressMatchService.getTreeMemoryReport());
+    }
+
     /**
      * 获取统计
      */
@@ -92,4 +186,20 @@ public class MatchController {
     public ResponseEntity<Map<String, Object>> getStats() {
         return ResponseEntity.ok(addressMatchService.getSimpleStats());
     }
+
+    /**
+     * 请求参数错误（在线匹配的地址、topK、批量大小）
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    /**
+     * 与当前状态冲突（已有匹配任务在运行、任务被取消、没有可回滚的版本）；其他异常按服务器错误处理
+     */
+    @ExceptionHandler({MatchConflictException.class, CancellationException.class})
+    public ResponseEntity<String> handleConflict(RuntimeException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.example.addressmatch.entity;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 匹配断点：每提交一个分块事务更新一次，记录版本中已提交的最大表B ID 和累计计数。
+ * 未完成的版本重启后从 last_b_id 之后继续，表A指纹不一致时不能续跑。
+ */
+@Data
+@Entity
+@Table(name = "match_checkpoint")
+public class MatchCheckpoint {
+
+    @Id
+    @Column(name = "run_id")
+    private Long runId;                // 所属匹配版本
+
+    @Column(name = "last_b_id")
+    private Long lastBId = 0L;         // 已提交的最大表B ID
+
+    @Column(name = "processed")
+    private Long processed = 0L;
+
+    @Column(name = "success_match")
+    private Long successMatch = 0L;
+
+    @Column(name = "table_c_count")
+    private Long tableCCount = 0L;
+
+    @Column(name = "table_d_count")
+    private Long tableDCount = 0L;
+
+    // 开始匹配时的表A指纹
+    @Column(name = "a_count")
+    private Long aCount;
+
+    @Column(name = "a_max_id")
+    private Long aMaxId;
+
+    @Column(name = "a_id_sum")
+    private Long aIdSum;
+
+    @Column(name = "a_length_sum")
+    private Long aLengthSum;
+
+    @Column(name = "a_content_sum")
+    private Long aContentSum;          // 表A地址CRC32之和，升级前的断点为null
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
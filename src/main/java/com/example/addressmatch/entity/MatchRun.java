@@ -0,0 +1,29 @@
+package com.example.addressmatch.entity;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "match_run", indexes = @Index(name = "idx_match_run_status", columnList = "status"))
+public class MatchRun {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "status")
+    private String status = "BUILDING"; // 状态：BUILDING/ACTIVE/SUPERSEDED/ROLLED_BACK/FAILED/PURGING/PURGED
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "table_c_count")
+    private Long tableCCount;
+
+    @Column(name = "table_d_count")
+    private Long tableDCount;
+}
\ No newline at end of file
@@ -5,7 +5,7 @@ import javax.persistence.*;
 
 @Data
 @Entity
-@Table(name = "table_c")
+@Table(name = "table_c", indexes = @Index(name = "idx_table_c_run", columnList = "run_id"))
 public class TableC {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -20,6 +20,9 @@ public class TableC {
     @Column(name = "match_score")
     private Double matchScore;
 
+    @Column(name = "run_id")
+    private Long runId;                // 所属匹配版本
+
     // 添加无参构造函数（重要）
     public TableC() {}
 
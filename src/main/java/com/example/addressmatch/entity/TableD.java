@@ -5,7 +5,7 @@ import javax.persistence.*;
 
 @Data
 @Entity
-@Table(name = "table_d")
+@Table(name = "table_d", indexes = @Index(name = "idx_table_d_run_b", columnList = "run_id,b_id"))
 public class TableD {
 
     @Id
@@ -20,4 +20,7 @@ public class TableD {
 
     @Column(name = "status")
     private String status = "PENDING"; // 状态：PENDING/ADDED/REJECTED
+
+    @Column(name = "run_id")
+    private Long runId;                // 所属匹配版本
 }
\ No newline at end of file
@@ -0,0 +1,298 @@
+package com.example.addressmatch.model;
+
+import java.util.*;
+
+/**
+ * 字二元组倒排索引：地址树上每个带地址的叶子为一篇文档，文本为根到叶子路径上各级名称的拼接（占位名跳过），
+ * 按相邻两个字切分，每个二元组记录包含它的文档（升序）。不依赖表B地址的解析结果，组件切分错误、
+ * 缺级、顺序颠倒的地址仍能找到候选。
+ *
+ * 打分为二元组集合的 TF-IDF 余弦相似度（地址很短，词频按0/1计），完全相同为1.0：
+ * 先取查询中最稀有的若干二元组的倒排表合并出候选并按部分得分保留前 rerankSize 个，
+ * 其余常见二元组（如“社区”“街道”）只在候选上用二分查找补分，不遍历它们的长倒排表。
+ * 构建后只读，可被多线程共享；节点编号与所基于的地址树版本对应。
+ */
+public final class AddressBigramIndex {
+
+    private final CompactAddressTree tree;
+
+    // 文档（叶子节点）及其向量长度
+    private final int[] docNodes;
+    private final float[] docNorms;
+
+    private final Map<Integer, Term> terms;
+
+    // 未出现在任何文档中的二元组的 idf
+    private final float unseenIdf;
+
+    private AddressBigramIndex(CompactAddressTree tree, int[] docNodes, float[] docNorms,
+                               Map<Integer, Term> terms, float unseenIdf) {
+        this.tree = tree;
+        this.docNodes = docNodes;
+        this.docNorms = docNorms;
+        this.terms = terms;
+        this.unseenIdf = unseenIdf;
+    }
+
+    /**
+     * 为地址树的所有带地址叶子建立索引
+     */
+    public static AddressBigramIndex build(CompactAddressTree tree) {
+        int[] parents = new int[tree.getNodeCount()];
+        int docCount = 0;
+        for (int node = 0; node < tree.getNodeCount(); node++) {
+            for (int child = tree.getFirstChild(node); child < tree.getChildEnd(node); child++) {
+                parents[child] = node;
+            }
+            if (isDocument(tree, node)) {
+                docCount++;
+            }
+        }
+
+        int[] docNodes = new int[docCount];
+        int[][] docTerms = new int[docCount][];
+        Map<Integer, int[]> documentFrequency = new HashMap<>();
+        int doc = 0;
+        for (int node = 0; node < tree.getNodeCount(); node++) {
+            if (!isDocument(tree, node)) {
+                continue;
+            }
+            docNodes[doc] = node;
+            docTerms[doc] = bigrams(pathText(tree, parents, node));
+            for (int term : docTerms[doc]) {
+                documentFrequency.computeIfAbsent(term, t -> new int[1])[0]++;
+            }
+            doc++;
+        }
+
+        Map<Integer, Term> terms = new HashMap<>(documentFrequency.size() * 2);
+        for (Map.Entry<Integer, int[]> entry : documentFrequency.entrySet()) {
+            int df = entry.getValue()[0];
+            terms.put(entry.getKey(), new Term(new int[df], idf(docCount, df)));
+        }
+        float[] docNorms = new float[docCount];
+        for (doc = 0; doc < docCount; doc++) {
+            double norm = 0;
+            for (int key : docTerms[doc]) {
+                Term term = terms.get(key);
+                term.docs[term.size++] = doc;
+                norm += (double) term.idf * term.idf;
+            }
+            docNorms[doc] = (float) Math.sqrt(norm);
+            docTerms[doc] = null;
+        }
+        return new AddressBigramIndex(tree, docNodes, docNorms, terms, idf(docCount, 0));
+    }
+
+    public CompactAddressTree getTree() {
+        return tree;
+    }
+
+    public int getDocumentCount() {
+        return docNodes.length;
+    }
+
+    public int getTermCount() {
+        return terms.size();
+    }
+
+    /**
+     * 按余弦相似度从高到低返回最多 limit 个文档。
+     * seedPostings 为合并候选时最多读取的倒排表长度之和（至少读取最稀有的一个），rerankSize 为补分的候选数
+     */
+    public List<Hit> search(String text, int limit, int seedPostings, int rerankSize) {
+        int[] queryTerms = bigrams(text);
+        if (queryTerms.length == 0 || docNodes.length == 0) {
+            return Collections.emptyList();
+        }
+
+        double queryNorm = 0;
+        List<Term> known = new ArrayList<>(queryTerms.length);
+        for (int key : queryTerms) {
+            Term term = terms.get(key);
+            float idf = term == null ? unseenIdf : term.idf;
+            queryNorm += (double) idf * idf;
+            if (term != null) {
+                known.add(term);
+            }
+        }
+        if (known.isEmpty()) {
+            return Collections.emptyList();
+        }
+        known.sort(Comparator.comparingInt(term -> term.size));
+
+        // 1. 最稀有的二元组合并出候选，用开放寻址散列表按文档累加得分
+        int seedTerms = 0;
+        int seedLength = 0;
+        while (seedTerms < known.size()
+                && (seedTerms == 0 || seedLength + known.get(seedTerms).size <= seedPostings)) {
+            seedLength += Math.min(known.get(seedTerms).size, seedPostings);
+            seedTerms++;
+        }
+        int mask = Integer.highestOneBit(Math.max(1, seedLength) * 2) * 2 - 1;
+        int[] slots = new int[mask + 1];
+        Arrays.fill(slots, -1);
+        double[] partial = new double[mask + 1];
+        int read = 0;
+        for (int t = 0; t < seedTerms; t++) {
+            Term term = known.get(t);
+            double weight = (double) term.idf * term.idf;
+            for (int i = 0; i < term.size && read < seedLength; i++, read++) {
+                int doc = term.docs[i];
+                int slot = (doc * 0x9E3779B9) & mask;
+                while (slots[slot] != -1 && slots[slot] != doc) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = doc;
+                partial[slot] += weight;
+            }
+        }
+
+        // 2. 按部分得分保留前 rerankSize 个（最小堆），剩余二元组在这些候选上二分查找补分；
+        //    得分为正数，float 的位表示与大小顺序一致，与槽位一起编码为 long 比较
+        long[] heap = new long[Math.max(1, rerankSize)];
+        int kept = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            if (slots[slot] == -1) {
+                continue;
+            }
+            long entry = ((long) Float.floatToIntBits((float) partial[slot]) << 32) | slot;
+            if (kept < heap.length) {
+                heap[kept] = entry;
+                siftUp(heap, kept++);
+            } else if (entry > heap[0]) {
+                heap[0] = entry;
+                siftDown(heap, kept);
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(kept);
+        for (int k = 0; k < kept; k++) {
+            int slot = (int) heap[k];
+            int doc = slots[slot];
+            double dot = partial[slot];
+            for (int t = seedTerms; t < known.size(); t++) {
+                Term term = known.get(t);
+                if (Arrays.binarySearch(term.docs, 0, term.size, doc) >= 0) {
+                    dot += (double) term.idf * term.idf;
+                }
+            }
+            double score = Math.min(1.0, dot / (Math.sqrt(queryNorm) * docNorms[doc]));
+            hits.add(new Hit(docNodes[doc], score));
+        }
+        hits.sort((a, b) -> Double.compare(b.score, a.score));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        while (i > 0 && heap[(i - 1) >>> 1] > heap[i]) {
+            swap(heap, i, (i - 1) >>> 1);
+            i = (i - 1) >>> 1;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            if (left < size && heap[left] < heap[smallest]) smallest = left;
+            if (left + 1 < size && heap[left + 1] < heap[smallest]) smallest = left + 1;
+            if (smallest == i) return;
+            swap(heap, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(long[] values, int i, int j) {
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    /**
+     * 按内存布局估算占用字节数（不含地址树）
+     */
+    public long estimateBytes() {
+        long bytes = CompactAddressTree.arrayBytes(docNodes.length, 4) + CompactAddressTree.arrayBytes(docNorms.length, 4);
+        for (Term term : terms.values()) {
+            // HashMap 条目、Integer 键、Term 对象和倒排数组
+            bytes += 32 + 16 + 24 + CompactAddressTree.arrayBytes(term.docs.length, 4);
+        }
+        return bytes;
+    }
+
+    private static boolean isDocument(CompactAddressTree tree, int node) {
+        return tree.isLeaf(node) && tree.hasAddresses(node);
+    }
+
+    private static String pathText(CompactAddressTree tree, int[] parents, int node) {
+        Deque<String> names = new ArrayDeque<>();
+        for (int current = node; current != CompactAddressTree.ROOT; current = parents[current]) {
+            if (tree.getNameId(current) != tree.placeholderNameId(tree.getDepth(current))) {
+                names.push(tree.getName(current));
+            }
+        }
+        return String.join("", names);
+    }
+
+    /**
+     * 去重后的二元组（升序），单字文本按单字计
+     */
+    private static int[] bigrams(String text) {
+        if (text.length() == 1) {
+            return new int[]{text.charAt(0)};
+        }
+        int[] keys = new int[Math.max(0, text.length() - 1)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (text.charAt(i) << 16) | text.charAt(i + 1);
+        }
+        Arrays.sort(keys);
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (count == 0 || keys[count - 1] != keys[i]) {
+                keys[count++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    private static float idf(int docCount, int df) {
+        return (float) (Math.log((docCount + 1.0) / (df + 1.0)) + 1.0);
+    }
+
+    /**
+     * 二元组的倒排表（文档编号升序）和 idf
+     */
+    private static final class Term {
+        private final int[] docs;
+        private final float idf;
+        private int size;
+
+        private Term(int[] docs, float idf) {
+            this.docs = docs;
+            this.idf = idf;
+        }
+    }
+
+    /**
+     * 命中的叶子节点及其相似度
+     */
+    public static final class Hit {
+        private final int node;
+        private final double score;
+
+        private Hit(int node, double score) {
+            this.node = node;
+            this.score = score;
+        }
+
+        public int getNode() {
+            return node;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.addressmatch.model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 已发布的地址树版本
+ *
+ * 引用计数：发布方（当前版本指针）持有一个引用，每个读取方通过 acquire 得到的 Lease 各持有一个。
+ * 新版本发布后旧版本被 retire（释放发布方的引用），最后一个读取方关闭 Lease 时版本被释放，
+ * 树的引用随之清空。已释放的版本不能再被 acquire。
+ * 按省分片时 tree 只含根节点和全国的精确地址索引，各省的树由 shards 按需加载。
+ * 上次全量构建之后增量插入的地址在 delta 中（形状与全量树相同的小树，带自己的精确地址索引），
+ * 匹配时与 tree（或分片）一起遍历。
+ */
+public final class AddressTreeSnapshot {
+
+    private final long version;
+    private final long publishedAt;
+    private final Consumer<AddressTreeSnapshot> onRelease;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile CompactAddressTree tree;
+    private volatile CompactAddressTree delta;
+    private volatile ProvinceShards shards;
+    private volatile boolean retired;
+
+    public AddressTreeSnapshot(long version, CompactAddressTree tree, Consumer<AddressTreeSnapshot> onRelease) {
+        this(version, tree, null, null, onRelease);
+    }
+
+    public AddressTreeSnapshot(long version, CompactAddressTree tree, CompactAddressTree delta, ProvinceShards shards,
+                               Consumer<AddressTreeSnapshot> onRelease) {
+        this.version = version;
+        this.tree = tree;
+        this.delta = delta;
+        this.shards = shards;
+        this.onRelease = onRelease;
+        this.publishedAt = System.currentTimeMillis();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getPublishedAt() {
+        return publishedAt;
+    }
+
+    /**
+     * 分片目录，未分片时为null
+     */
+    public ProvinceShards getShards() {
+        return shards;
+    }
+
+    /**
+     * 增量树，上次全量构建后没有增量插入时为null
+     */
+    public CompactAddressTree getDelta() {
+        return delta;
+    }
+
+    public boolean isRetired() {
+        return retired;
+    }
+
+    /**
+     * 当前持有该版本的读取方数量
+     */
+    public int getReaders() {
+        return Math.max(0, references.get() - (retired ? 0 : 1));
+    }
+
+    /**
+     * 固定该版本供读取，版本已释放时返回null
+     */
+    public Lease acquire() {
+        while (true) {
+            int current = references.get();
+            if (current == 0) {
+                return null;
+            }
+            if (references.compareAndSet(current, current + 1)) {
+                return new Lease(this);
+            }
+        }
+    }
+
+    /**
+     * 新版本发布后由发布方调用
+     */
+    public void retire() {
+        retired = true;
+        release();
+    }
+
+    private void release() {
+        if (references.decrementAndGet() == 0) {
+            onRelease.accept(this);
+            tree = null;
+            delta = null;
+            shards = null;
+        }
+    }
+
+    /**
+     * 读取方持有的版本租约，关闭后不能再使用其中的树
+     */
+    public static final class Lease implements AutoCloseable {
+        private final AddressTreeSnapshot snapshot;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private Lease(AddressTreeSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        public CompactAddressTree getTree() {
+            return snapshot.tree;
+        }
+
+        public long getVersion() {
+            return snapshot.version;
+        }
+
+        /**
+         * 分片目录，未分片时为null
+         */
+        public ProvinceShards getShards() {
+            return snapshot.shards;
+        }
+
+        /**
+         * 增量树，没有增量插入时为null
+         */
+        public CompactAddressTree getDelta() {
+            return snapshot.delta;
+        }
+
+        /**
+         * 规范化地址在全量树和增量树的精确地址索引中对应的表A ID（升序），没有返回空数组
+         */
+        public long[] findExact(String normalizedAddress) {
+            long[] ids = snapshot.tree.getExactIndex().find(normalizedAddress);
+            CompactAddressTree delta = snapshot.delta;
+            if (delta == null) {
+                return ids;
+            }
+            long[] added = delta.getExactIndex().find(normalizedAddress);
+            if (added.length == 0) {
+                return ids;
+            }
+            long[] merged = Arrays.copyOf(ids, ids.length + added.length);
+            System.arraycopy(added, 0, merged, ids.length, added.length);
+            Arrays.sort(merged);
+            return merged;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                snapshot.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.addressmatch.model;
+
+import com.example.addressmatch.util.CommonUtils;
+
+import java.util.*;
+
+/**
+ * 子节点名称的模糊（包含关系）索引
+ *
+ * 查询返回所有满足 name.equals(target) || target.contains(name) || name.contains(target)
+ * 的子节点位置（升序、去重），与 CommonUtils.isFuzzyMatch 的线性扫描结果一致：
+ * - name 是 target 的子串：枚举 target 中长度在子节点名称长度范围内的子串，查名称表；
+ * - target 是 name 的子串：取 target 中最稀有的二元组（单字时用单字）的倒排表，再逐个校验。
+ * 位置即名称在构造参数数组中的下标。构建后只读，可被多线程共享。
+ */
+public final class ChildNameIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final String[] names;
+    private final Map<String, Integer> positionByName;
+    private final Map<Character, int[]> unigramPostings;
+    private final Map<Integer, int[]> bigramPostings;
+    private final int minNameLength;
+    private final int maxNameLength;
+
+    public ChildNameIndex(String[] names) {
+        this.names = names;
+        this.positionByName = new HashMap<>(names.length * 2);
+
+        Map<Character, List<Integer>> unigrams = new HashMap<>();
+        Map<Integer, List<Integer>> bigrams = new HashMap<>();
+        int minLength = Integer.MAX_VALUE;
+        int maxLength = 0;
+
+        for (int position = 0; position < names.length; position++) {
+            String name = names[position];
+            positionByName.put(name, position);
+            minLength = Math.min(minLength, name.length());
+            maxLength = Math.max(maxLength, name.length());
+
+            for (int i = 0; i < name.length(); i++) {
+                addPosting(unigrams, name.charAt(i), position);
+                if (i + 1 < name.length()) {
+                    addPosting(bigrams, bigram(name, i), position);
+                }
+            }
+        }
+
+        this.minNameLength = names.length == 0 ? 0 : minLength;
+        this.maxNameLength = maxLength;
+        this.unigramPostings = toPostingArrays(unigrams);
+        this.bigramPostings = toPostingArrays(bigrams);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int position) {
+        return names[position];
+    }
+
+    /**
+     * 返回与 target 存在包含关系的子节点位置
+     */
+    public int[] findFuzzyMatches(String target) {
+        int length = target.length();
+        if (length == 0) {
+            // 任何名称都包含空串
+            int[] all = new int[names.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] found = new int[8];
+        int count = 0;
+
+        // 名称是 target 的子串（含相等）
+        int maxLength = Math.min(maxNameLength, length);
+        for (int subLength = Math.max(1, minNameLength); subLength <= maxLength; subLength++) {
+            for (int start = 0; start + subLength <= length; start++) {
+                Integer position = positionByName.get(target.substring(start, start + subLength));
+                if (position != null) {
+                    if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                    found[count++] = position;
+                }
+            }
+        }
+        if (minNameLength == 0) {
+            Integer position = positionByName.get("");
+            if (position != null) {
+                if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                found[count++] = position;
+            }
+        }
+
+        // target 是名称的子串
+        if (length <= maxNameLength) {
+            int[] postings = length == 1 ? unigramPostings.get(target.charAt(0)) : rarestBigramPostings(target);
+            if (postings != null) {
+                for (int position : postings) {
+                    if (names[position].length() > length && names[position].contains(target)) {
+                        if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                        found[count++] = position;
+                    }
+                }
+            }
+        }
+
+        if (count == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(found, 0, count);
+        int unique = 1;
+        for (int i = 1; i < count; i++) {
+            if (found[i] != found[unique - 1]) {
+                found[unique++] = found[i];
+            }
+        }
+        return Arrays.copyOf(found, unique);
+    }
+
+    /**
+     * 返回与 target 近似相同（CommonUtils.isSimilar，编辑距离不超过 maxEdits 且数字相同）的子节点位置，升序。
+     * 一次编辑至多改变 target 的一个字，因此符合条件的名称一定含有 target 任意 maxEdits+1 个位置中某一位置的字：
+     * 只读取其中最稀有的 maxEdits+1 个字的倒排表，拼接后排序去重再逐个校验，代价与这几个倒排表的长度成正比
+     */
+    public int[] findSimilarMatches(String target, int maxEdits) {
+        int length = target.length();
+        if (length <= maxEdits) {
+            // 字太少无法过滤，按长度筛选
+            int[] found = new int[8];
+            int count = 0;
+            for (int position = 0; position < names.length; position++) {
+                if (isSimilar(target, position, maxEdits)) {
+                    if (count == found.length) found = Arrays.copyOf(found, count * 2);
+                    found[count++] = position;
+                }
+            }
+            return count == 0 ? EMPTY : Arrays.copyOf(found, count);
+        }
+
+        int[][] postings = new int[length][];
+        for (int i = 0; i < length; i++) {
+            int[] list = unigramPostings.get(target.charAt(i));
+            postings[i] = list == null ? EMPTY : list;
+        }
+        Arrays.sort(postings, Comparator.comparingInt(list -> list.length));
+        int total = 0;
+        for (int i = 0; i <= maxEdits; i++) {
+            total += postings[i].length;
+        }
+        if (total == 0) {
+            return EMPTY;
+        }
+        int[] candidates = new int[total];
+        int offset = 0;
+        for (int i = 0; i <= maxEdits; i++) {
+            System.arraycopy(postings[i], 0, candidates, offset, postings[i].length);
+            offset += postings[i].length;
+        }
+        Arrays.sort(candidates);
+
+        // 排序后相同位置相邻，跳过重复后原地保留校验通过的位置
+        int count = 0;
+        for (int i = 0; i < total; i++) {
+            int position = candidates[i];
+            if ((i == 0 || position != candidates[i - 1]) && isSimilar(target, position, maxEdits)) {
+                candidates[count++] = position;
+            }
+        }
+        return count == 0 ? EMPTY : Arrays.copyOf(candidates, count);
+    }
+
+    private boolean isSimilar(String target, int position, int maxEdits) {
+        return Math.abs(names[position].length() - target.length()) <= maxEdits
+                && CommonUtils.isSimilar(target, names[position], maxEdits);
+    }
+
+    private int[] rarestBigramPostings(String target) {
+        int[] rarest = null;
+        for (int i = 0; i + 1 < target.length(); i++) {
+            int[] postings = bigramPostings.get(bigram(target, i));
+            if (postings == null) {
+                return null; // 有二元组不存在，不可能有名称包含 target
+            }
+            if (rarest == null || postings.length < rarest.length) {
+                rarest = postings;
+            }
+        }
+        return rarest;
+    }
+
+    private static int bigram(String s, int i) {
+        return (s.charAt(i) << 16) | s.charAt(i + 1);
+    }
+
+    private static <K> void addPosting(Map<K, List<Integer>> postings, K key, int position) {
+        List<Integer> list = postings.computeIfAbsent(key, k -> new ArrayList<>(2));
+        // 同一名称内重复出现的字只记一次
+        if (list.isEmpty() || list.get(list.size() - 1) != position) {
+            list.add(position);
+        }
+    }
+
+    private static <K> Map<K, int[]> toPostingArrays(Map<K, List<Integer>> postings) {
+        Map<K, int[]> arrays = new HashMap<>(postings.size() * 2);
+        for (Map.Entry<K, List<Integer>> entry : postings.entrySet()) {
+            List<Integer> list = entry.getValue();
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            arrays.put(entry.getKey(), array);
+        }
+        return arrays;
+    }
+}
@@ -0,0 +1,625 @@
+package com.example.addressmatch.model;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.util.CommonUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 只读的紧凑地址树，由 AddressTreeNode 构成的可变树冻结得到
+ *
+ * 节点按广度优先编号（根为0），同一父节点的子节点编号连续，保持可变树中的遍历顺序：
+ *   nodeNames[n]        名称在字典中的编号
+ *   depths[n]           深度
+ *   childOffsets[n..n+1) 子节点编号区间
+ *   sortedChildren      每个子节点区间按名称编号排序后的子节点，用于二分查找精确匹配
+ *   addressOffsets[n..n+1) 叶子上的表A ID 在 addressIds 中的区间
+ * 子节点较多的节点额外建立 ChildNameIndex 做模糊查找，其余节点线性扫描。
+ * 名称到编号、节点到 ChildNameIndex 的查找表都是开放寻址的基本类型数组（线性探测），不装箱。
+ * 同时携带表A规范化完整地址的精确索引（ExactAddressIndex），与树一起发布和写入快照。
+ * 匹配时表B组件先编码为名称编号（nameId），精确比较只比较编号；
+ * 有索引的节点按 (节点, 名称编号) 记住模糊查找结果，上层节点（省、市、区）的结果在查询间大量复用。
+ * 构建后不再修改，可被多线程共享；增量插入的地址另建一棵增量树，与全量树一起匹配，下次全量构建时并入。
+ */
+public final class CompactAddressTree {
+
+    public static final int ROOT = 0;
+
+    // 子节点数达到该值才建立模糊查找索引
+    private static final int INDEX_MIN_CHILDREN = 8;
+    // 模糊查找备忘的条目上限，达到后不再新增
+    private static final int FUZZY_MEMO_MAX_SIZE = 1 << 16;
+    private static final String PLACEHOLDER_PREFIX = "未知_";
+
+    private final String[] names;
+    private final int[] nodeNames;
+    private final int[] depths;
+    private final int[] childOffsets;
+    private final int[] addressOffsets;
+    private final long[] addressIds;
+    private final BitSet leaves;
+    private final ExactAddressIndex exactIndex;
+
+    // 以下由上面的数组推导
+    // 名称 -> 名称编号：槽位存 编号+1，0为空
+    private final int[] nameSlots;
+    private final int[] sortedChildren;
+    // 节点 -> ChildNameIndex：槽位存 节点+1，0为空，索引在同下标的 indexValues 中
+    private final int[] indexKeys;
+    private final ChildNameIndex[] indexValues;
+    private final int maxDepth;
+    // 各级占位名的名称编号，下标为级别，不存在为-1
+    private final int[] placeholderNameIds;
+    // (节点 << 32 | 名称编号) -> 模糊匹配的子节点，只读。查询线程并发写入，仍用 ConcurrentHashMap（键装箱），
+    // 条目数有上限 FUZZY_MEMO_MAX_SIZE，且只记有索引的节点
+    private final Map<Long, int[]> fuzzyMemo = new ConcurrentHashMap<>();
+
+    private CompactAddressTree(String[] names, int[] nodeNames, int[] depths, int[] childOffsets,
+                               int[] addressOffsets, long[] addressIds, BitSet leaves,
+                               ExactAddressIndex exactIndex) {
+        this.names = names;
+        this.nodeNames = nodeNames;
+        this.depths = depths;
+        this.childOffsets = childOffsets;
+        this.addressOffsets = addressOffsets;
+        this.addressIds = addressIds;
+        this.leaves = leaves;
+        this.exactIndex = exactIndex;
+
+        this.nameSlots = new int[tableSize(names.length)];
+        for (int i = 0; i < names.length; i++) {
+            int mask = nameSlots.length - 1;
+            int slot = mix(names[i].hashCode()) & mask;
+            while (nameSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            nameSlots[slot] = i + 1;
+        }
+
+        int nodeCount = nodeNames.length;
+        int deepest = 0;
+        for (int depth : depths) {
+            deepest = Math.max(deepest, depth);
+        }
+        this.maxDepth = deepest;
+        this.placeholderNameIds = new int[deepest + 1];
+        for (int level = 0; level <= deepest; level++) {
+            placeholderNameIds[level] = nameId(placeholderName(level));
+        }
+        this.sortedChildren = new int[Math.max(0, nodeCount - 1)];
+        int indexed = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (childOffsets[node + 1] - childOffsets[node] >= INDEX_MIN_CHILDREN) {
+                indexed++;
+            }
+        }
+        this.indexKeys = new int[tableSize(indexed)];
+        this.indexValues = new ChildNameIndex[indexKeys.length];
+        for (int node = 0; node < nodeCount; node++) {
+            int from = childOffsets[node];
+            int to = childOffsets[node + 1];
+            if (from == to) {
+                continue;
+            }
+            Integer[] segment = new Integer[to - from];
+            for (int i = 0; i < segment.length; i++) {
+                segment[i] = from + i;
+            }
+            Arrays.sort(segment, Comparator.comparingInt(child -> nodeNames[child]));
+            for (int i = 0; i < segment.length; i++) {
+                sortedChildren[from - 1 + i] = segment[i];
+            }
+
+            if (to - from >= INDEX_MIN_CHILDREN) {
+                String[] childNames = new String[to - from];
+                for (int i = 0; i < childNames.length; i++) {
+                    childNames[i] = names[nodeNames[from + i]];
+                }
+                int mask = indexKeys.length - 1;
+                int slot = mix(node) & mask;
+                while (indexKeys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                indexKeys[slot] = node + 1;
+                indexValues[slot] = new ChildNameIndex(childNames);
+            }
+        }
+    }
+
+    /**
+     * 冻结可变树，exactIndex 为同一批表A地址的精确索引
+     */
+    public static CompactAddressTree freeze(AddressTreeNode root, ExactAddressIndex exactIndex) {
+        Map<String, Integer> nameIds = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        List<AddressTreeNode> order = new ArrayList<>();
+        order.add(root);
+
+        // 广度优先编号：按出队顺序追加子节点，同一父节点的子节点编号连续
+        for (int i = 0; i < order.size(); i++) {
+            order.addAll(order.get(i).getChildren().values());
+        }
+
+        int nodeCount = order.size();
+        int[] nodeNames = new int[nodeCount];
+        int[] depths = new int[nodeCount];
+        int[] childOffsets = new int[nodeCount + 1];
+        int[] addressOffsets = new int[nodeCount + 1];
+        BitSet leaves = new BitSet(nodeCount);
+        int addressCount = 0;
+        int nextChild = 1;
+
+        for (int n = 0; n < nodeCount; n++) {
+            AddressTreeNode node = order.get(n);
+            nodeNames[n] = nameIds.computeIfAbsent(node.getName(), name -> {
+                names.add(name);
+                return names.size() - 1;
+            });
+            depths[n] = node.getDepth();
+            leaves.set(n, node.isLeaf());
+            childOffsets[n] = nextChild;
+            nextChild += node.getChildren().size();
+            addressOffsets[n] = addressCount;
+            addressCount += node.getAddresses().size();
+        }
+        childOffsets[nodeCount] = nextChild;
+        addressOffsets[nodeCount] = addressCount;
+
+        long[] addressIds = new long[addressCount];
+        for (int n = 0; n < nodeCount; n++) {
+            int offset = addressOffsets[n];
+            for (TableA address : order.get(n).getAddresses()) {
+                addressIds[offset++] = address.getId();
+            }
+        }
+
+        return new CompactAddressTree(names.toArray(new String[0]), nodeNames, depths, childOffsets,
+                addressOffsets, addressIds, leaves, exactIndex);
+    }
+
+    /**
+     * 解冻为可变树（用于增量插入），叶子上的表A对象只有ID；权重按构建时的规则 log(深度+1) 还原
+     */
+    public AddressTreeNode thaw() {
+        AddressTreeNode[] nodes = new AddressTreeNode[nodeNames.length];
+        for (int n = 0; n < nodes.length; n++) {
+            AddressTreeNode node = new AddressTreeNode(getName(n));
+            node.setDepth(depths[n]);
+            node.setWeight(Math.log(depths[n] + 1));
+            node.setLeaf(leaves.get(n));
+            if (addressOffsets[n + 1] > addressOffsets[n]) {
+                node.setAddresses(new CopyOnWriteArrayList<>(getAddresses(n)));
+            }
+            nodes[n] = node;
+        }
+        for (int n = 0; n < nodes.length; n++) {
+            for (int child = childOffsets[n]; child < childOffsets[n + 1]; child++) {
+                nodes[n].getChildren().put(getName(child), nodes[child]);
+            }
+        }
+        return nodes[ROOT];
+    }
+
+    /**
+     * 合并增量树，得到与全量构建形状相同的树，精确地址索引为两者合并。
+     * 需要解冻两棵树，代价与全量树规模成正比，只在需要整棵树的场合使用（如倒排索引引擎）
+     */
+    public static CompactAddressTree merge(CompactAddressTree base, CompactAddressTree delta) {
+        AddressTreeNode root = base.thaw();
+        mergeInto(root, delta.thaw());
+        return freeze(root, base.exactIndex.merge(delta.exactIndex));
+    }
+
+    private static void mergeInto(AddressTreeNode target, AddressTreeNode source) {
+        for (AddressTreeNode child : source.getChildren().values()) {
+            AddressTreeNode existing = target.getChildren().get(child.getName());
+            if (existing == null) {
+                target.getChildren().put(child.getName(), child);
+                continue;
+            }
+            existing.getAddresses().addAll(child.getAddresses());
+            existing.setLeaf(existing.isLeaf() || child.isLeaf());
+            mergeInto(existing, child);
+        }
+    }
+
+    /**
+     * 第 level 级空组件在树中的占位名
+     */
+    public static String placeholderName(int level) {
+        return PLACEHOLDER_PREFIX + level;
+    }
+
+    // ================ 读取 ================
+
+    public int getNodeCount() {
+        return nodeNames.length;
+    }
+
+    public int getAddressCount() {
+        return addressIds.length;
+    }
+
+    public ExactAddressIndex getExactIndex() {
+        return exactIndex;
+    }
+
+    public String getName(int node) {
+        return names[nodeNames[node]];
+    }
+
+    public int getNameId(int node) {
+        return nodeNames[node];
+    }
+
+    /**
+     * 名称在字典中的编号，树中没有该名称返回-1
+     */
+    public int nameId(String name) {
+        int mask = nameSlots.length - 1;
+        for (int slot = mix(name.hashCode()) & mask; nameSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = nameSlots[slot] - 1;
+            if (names[id].equals(name)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 第 level 级占位名的名称编号，不存在返回-1
+     */
+    public int placeholderNameId(int level) {
+        return level < placeholderNameIds.length ? placeholderNameIds[level] : -1;
+    }
+
+    public int getDepth(int node) {
+        return depths[node];
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public boolean isLeaf(int node) {
+        return leaves.get(node);
+    }
+
+    public boolean hasAddresses(int node) {
+        return addressOffsets[node + 1] > addressOffsets[node];
+    }
+
+    public boolean hasChildren(int node) {
+        return childOffsets[node + 1] > childOffsets[node];
+    }
+
+    public int getFirstChild(int node) {
+        return childOffsets[node];
+    }
+
+    public int getChildEnd(int node) {
+        return childOffsets[node + 1];
+    }
+
+    public int getAddressStart(int node) {
+        return addressOffsets[node];
+    }
+
+    public int getAddressEnd(int node) {
+        return addressOffsets[node + 1];
+    }
+
+    public long getAddressId(int index) {
+        return addressIds[index];
+    }
+
+    /**
+     * 叶子上的表A地址（只有ID）
+     */
+    public List<TableA> getAddresses(int node) {
+        List<TableA> addresses = new ArrayList<>(addressOffsets[node + 1] - addressOffsets[node]);
+        for (int i = addressOffsets[node]; i < addressOffsets[node + 1]; i++) {
+            TableA address = new TableA();
+            address.setId(addressIds[i]);
+            addresses.add(address);
+        }
+        return addresses;
+    }
+
+    /**
+     * 从根节点按名称逐级查找，不存在返回-1
+     */
+    public int findPath(List<String> names) {
+        int node = ROOT;
+        for (int i = 0; i < names.size() && node >= 0; i++) {
+            node = findChild(node, names.get(i));
+        }
+        return node;
+    }
+
+    /**
+     * 把子树下所有表A ID加入 ids
+     */
+    public void collectAddressIds(int node, Collection<Long> ids) {
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            for (int a = addressOffsets[current]; a < addressOffsets[current + 1]; a++) {
+                ids.add(addressIds[a]);
+            }
+            for (int child = childOffsets[current]; child < childOffsets[current + 1]; child++) {
+                stack.push(child);
+            }
+        }
+    }
+
+    /**
+     * 名称完全相同的子节点，不存在返回-1
+     */
+    public int findChild(int node, String name) {
+        return findChild(node, nameId(name));
+    }
+
+    /**
+     * 名称编号相同的子节点，不存在（或 nameId 为-1）返回-1
+     */
+    public int findChild(int node, int nameId) {
+        if (nameId < 0) {
+            return -1;
+        }
+        int low = childOffsets[node] - 1;
+        int high = childOffsets[node + 1] - 2;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midName = nodeNames[sortedChildren[mid]];
+            if (midName < nameId) {
+                low = mid + 1;
+            } else if (midName > nameId) {
+                high = mid - 1;
+            } else {
+                return sortedChildren[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 与 target 存在包含关系的子节点（CommonUtils.isFuzzyMatch），按子节点顺序返回
+     */
+    public int[] findFuzzyChildren(int node, String target) {
+        return findFuzzyChildren(node, target, nameId(target));
+    }
+
+    /**
+     * 同上，targetId 为 target 的名称编号（-1表示树中没有）。
+     * 有索引的节点且 target 在字典中时结果进入备忘，返回的数组为共享的只读数组
+     */
+    public int[] findFuzzyChildren(int node, String target, int targetId) {
+        int from = childOffsets[node];
+        ChildNameIndex index = childIndex(node);
+        if (index != null) {
+            if (targetId < 0) {
+                return findIndexedFuzzyChildren(index, from, target);
+            }
+            long key = ((long) node << 32) | targetId;
+            int[] memo = fuzzyMemo.get(key);
+            if (memo == null) {
+                memo = findIndexedFuzzyChildren(index, from, target);
+                if (fuzzyMemo.size() < FUZZY_MEMO_MAX_SIZE) {
+                    fuzzyMemo.put(key, memo);
+                }
+            }
+            return memo;
+        }
+
+        int to = childOffsets[node + 1];
+        int[] matches = new int[to - from];
+        int count = 0;
+        for (int child = from; child < to; child++) {
+            if (CommonUtils.isFuzzyMatch(target, getName(child))) {
+                matches[count++] = child;
+            }
+        }
+        return count == matches.length ? matches : Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * 与 target 近似相同的子节点（CommonUtils.isSimilar），按子节点顺序返回；用于近似匹配兜底
+     */
+    public int[] findSimilarChildren(int node, String target, int maxEdits) {
+        int from = childOffsets[node];
+        ChildNameIndex index = childIndex(node);
+        if (index != null) {
+            return findIndexedSimilarChildren(index, from, target, maxEdits);
+        }
+
+        int to = childOffsets[node + 1];
+        int[] matches = new int[to - from];
+        int count = 0;
+        for (int child = from; child < to; child++) {
+            if (CommonUtils.isSimilar(target, getName(child), maxEdits)) {
+                matches[count++] = child;
+            }
+        }
+        return count == matches.length ? matches : Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * 节点的模糊查找索引，子节点数不足 INDEX_MIN_CHILDREN 时返回null
+     */
+    private ChildNameIndex childIndex(int node) {
+        int mask = indexKeys.length - 1;
+        for (int slot = mix(node) & mask; indexKeys[slot] != 0; slot = (slot + 1) & mask) {
+            if (indexKeys[slot] == node + 1) {
+                return indexValues[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 开放寻址表的槽位数：不小于条目数两倍的2的幂，负载因子不超过0.5
+     */
+    private static int tableSize(int entries) {
+        return Integer.highestOneBit(Math.max(1, entries) * 4 - 1);
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] findIndexedSimilarChildren(ChildNameIndex index, int from, String target, int maxEdits) {
+        int[] positions = index.findSimilarMatches(target, maxEdits);
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] += from;
+        }
+        return positions;
+    }
+
+    private static int[] findIndexedFuzzyChildren(ChildNameIndex index, int from, String target) {
+        int[] positions = index.findFuzzyMatches(target);
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] += from;
+        }
+        return positions;
+    }
+
+    /**
+     * 按内存布局估算占用字节数（不含模糊查找索引和备忘）
+     */
+    public long estimateBytes() {
+        long bytes = 0;
+        for (String name : names) {
+            bytes += stringBytes(name);
+        }
+        bytes += arrayBytes(names.length, 4);
+        bytes += arrayBytes(nameSlots.length, 4);
+        bytes += arrayBytes(nodeNames.length, 4) + arrayBytes(depths.length, 4)
+                + arrayBytes(childOffsets.length, 4) + arrayBytes(addressOffsets.length, 4)
+                + arrayBytes(sortedChildren.length, 4) + arrayBytes(addressIds.length, 8)
+                + arrayBytes((leaves.length() + 63) / 64, 8);
+        return bytes;
+    }
+
+    /**
+     * 估算可变树（含叶子上的表A实体）占用字节数，与 estimateBytes 对比
+     */
+    public static long estimateBytes(AddressTreeNode root) {
+        long bytes = 0;
+        Deque<AddressTreeNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            AddressTreeNode node = stack.pop();
+            int children = node.getChildren().size();
+            // 节点对象 + 名称（与子节点Map的键共用）
+            bytes += 40 + stringBytes(node.getName());
+            // ConcurrentHashMap：对象 + 桶数组 + 每个条目的Node
+            bytes += 64;
+            if (children > 0) {
+                bytes += arrayBytes(Math.max(16, Integer.highestOneBit((int) (children / 0.75f)) * 2), 4)
+                        + children * 32L;
+            }
+            // CopyOnWriteArrayList：对象 + 锁对象 + 数组
+            bytes += 24 + 16 + arrayBytes(node.getAddresses().size(), 4);
+            for (TableA address : node.getAddresses()) {
+                // 实体对象 + Long + 地址文本
+                bytes += 24 + 16 + (address.getAddressA() == null ? 0 : stringBytes(address.getAddressA()));
+            }
+            stack.addAll(node.getChildren().values());
+        }
+        return bytes;
+    }
+
+    // 以下按64位JVM、压缩指针估算
+    static long stringBytes(String s) {
+        boolean latin1 = true;
+        for (int i = 0; i < s.length() && latin1; i++) {
+            latin1 = s.charAt(i) < 256;
+        }
+        return 24 + arrayBytes(s.length(), latin1 ? 1 : 2);
+    }
+
+    static long arrayBytes(long length, int elementBytes) {
+        return align(16 + length * elementBytes);
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    // ================ 序列化（地址树快照） ================
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(names.length);
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        writeInts(out, nodeNames);
+        writeInts(out, depths);
+        writeInts(out, childOffsets);
+        writeInts(out, addressOffsets);
+        out.writeInt(addressIds.length);
+        for (long id : addressIds) {
+            out.writeLong(id);
+        }
+        long[] leafWords = leaves.toLongArray();
+        out.writeInt(leafWords.length);
+        for (long word : leafWords) {
+            out.writeLong(word);
+        }
+        exactIndex.writeTo(out);
+    }
+
+    public static CompactAddressTree readFrom(ByteBuffer buffer) {
+        String[] names = new String[buffer.getInt()];
+        for (int i = 0; i < names.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            names[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int[] nodeNames = readInts(buffer);
+        int[] depths = readInts(buffer);
+        int[] childOffsets = readInts(buffer);
+        int[] addressOffsets = readInts(buffer);
+        long[] addressIds = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(addressIds);
+        buffer.position(buffer.position() + addressIds.length * 8);
+        long[] leafWords = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(leafWords);
+        buffer.position(buffer.position() + leafWords.length * 8);
+        ExactAddressIndex exactIndex = ExactAddressIndex.readFrom(buffer);
+
+        if (nodeNames.length == 0 || depths.length != nodeNames.length
+                || childOffsets.length != nodeNames.length + 1 || addressOffsets.length != nodeNames.length + 1
+                || childOffsets[nodeNames.length] != nodeNames.length
+                || addressOffsets[nodeNames.length] != addressIds.length) {
+            throw new IllegalArgumentException("地址树数据不完整");
+        }
+        return new CompactAddressTree(names, nodeNames, depths, childOffsets, addressOffsets, addressIds,
+                BitSet.valueOf(leafWords), exactIndex);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * 4);
+        return values;
+    }
+}
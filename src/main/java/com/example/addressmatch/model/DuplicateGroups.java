@@ -0,0 +1,61 @@
+package com.example.addressmatch.model;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * 表B规范化地址的重复分组：CommonUtils.cleanAddress 后相同的地址为一组，按64位指纹
+ * （与 ExactAddressIndex 相同的 farmHashFingerprint64）识别。只记录成员数不少于2的组，
+ * 按指纹（有符号）升序存放在两个并列数组中，查找为二分查找。构建后只读，可被多线程共享。
+ */
+public final class DuplicateGroups {
+
+    public static final DuplicateGroups EMPTY = new DuplicateGroups(new long[0], new int[0], 0, 0, 0);
+
+    private final long[] keys;
+    private final int[] sizes;
+
+    // 参与分组的行数（规范化后非空）、不同规范化地址数、排序时溢写到磁盘的有序段数
+    @Getter private final long rows;
+    @Getter private final long distinct;
+    @Getter private final int spilledRuns;
+
+    public DuplicateGroups(long[] keys, int[] sizes, long rows, long distinct, int spilledRuns) {
+        this.keys = keys;
+        this.sizes = sizes;
+        this.rows = rows;
+        this.distinct = distinct;
+        this.spilledRuns = spilledRuns;
+    }
+
+    /**
+     * 规范化地址的分组键，规范化后为空的地址不参与分组
+     */
+    public static long key(String normalizedAddress) {
+        return ExactAddressIndex.key(normalizedAddress);
+    }
+
+    /**
+     * 规范化地址所在组的成员数，不在任何重复组中返回1
+     */
+    public int sizeOf(long key) {
+        int position = Arrays.binarySearch(keys, key);
+        return position >= 0 ? sizes[position] : 1;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    public int getGroupCount() {
+        return keys.length;
+    }
+
+    /**
+     * 去重率：因与组内其他地址相同而无需再次匹配的行数占比
+     */
+    public double getDedupRatio() {
+        return rows == 0 ? 0 : (rows - distinct) / (double) rows;
+    }
+}
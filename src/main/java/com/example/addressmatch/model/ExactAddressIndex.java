@@ -0,0 +1,220 @@
+package com.example.addressmatch.model;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.util.CommonUtils;
+import com.google.common.hash.Hashing;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 规范化完整地址的精确索引：CommonUtils.cleanAddress 后完全相同的表B地址直接得到表A ID，不解析、不遍历地址树
+ *
+ * 键为规范化地址的64位指纹（farmHashFingerprint64，跨版本稳定，可写入快照），
+ * 按 (指纹, 表A ID) 排序存放在两个并列 long 数组中，每条地址16字节。
+ * 指纹均匀分布，按高位分桶建立目录（桶数约为地址数），查找只需定位桶后比较桶内一两个元素。
+ * 千万级地址下不同地址指纹相同的概率约为百万分之三，不再回查原文。
+ * 构建后只读，可被多线程共享；增量插入的地址单独建索引（随增量树），需要时合并出新索引。
+ */
+public final class ExactAddressIndex {
+
+    public static final ExactAddressIndex EMPTY = new ExactAddressIndex(new long[0], new long[0]);
+
+    private static final long[] NO_IDS = new long[0];
+
+    private final long[] keys;
+    private final long[] ids;
+
+    // 以下由上面的数组推导：键的高 bucketBits 位为桶号，bucketStarts[b..b+1) 为桶内元素区间
+    private final int bucketBits;
+    private final int[] bucketStarts;
+
+    private ExactAddressIndex(long[] keys, long[] ids) {
+        this.keys = keys;
+        this.ids = ids;
+        this.bucketBits = Math.max(1, Math.min(30, 32 - Integer.numberOfLeadingZeros(Math.max(1, keys.length))));
+        this.bucketStarts = new int[(1 << bucketBits) + 1];
+        int position = 0;
+        for (int bucket = 0; bucket < (1 << bucketBits); bucket++) {
+            bucketStarts[bucket] = position;
+            while (position < keys.length && bucketOf(keys[position]) == bucket) {
+                position++;
+            }
+        }
+        bucketStarts[1 << bucketBits] = keys.length;
+    }
+
+    /**
+     * 为表A地址建立索引，规范化后为空的地址不进入索引
+     */
+    public static ExactAddressIndex build(Collection<TableA> addresses) {
+        return EMPTY.merge(addresses);
+    }
+
+    /**
+     * 合并新地址，返回新索引（本索引不变）
+     */
+    public ExactAddressIndex merge(Collection<TableA> addresses) {
+        long[] newKeys = new long[addresses.size()];
+        long[] newIds = new long[addresses.size()];
+        int count = 0;
+        for (TableA address : addresses) {
+            String normalized = CommonUtils.cleanAddress(address.getAddressA());
+            if (!normalized.isEmpty()) {
+                newKeys[count] = key(normalized);
+                newIds[count++] = address.getId();
+            }
+        }
+        if (count == 0) {
+            return this;
+        }
+        sort(newKeys, newIds, 0, count - 1);
+        return merge(newKeys, newIds, count);
+    }
+
+    /**
+     * 合并另一个索引，返回新索引（两者都不变）
+     */
+    public ExactAddressIndex merge(ExactAddressIndex other) {
+        if (other.keys.length == 0) {
+            return this;
+        }
+        return merge(other.keys, other.ids, other.keys.length);
+    }
+
+    /**
+     * 与按 (指纹, ID) 排好序的前 count 个元素归并
+     */
+    private ExactAddressIndex merge(long[] newKeys, long[] newIds, int count) {
+        long[] mergedKeys = new long[keys.length + count];
+        long[] mergedIds = new long[keys.length + count];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < mergedKeys.length; k++) {
+            if (j == count || (i < keys.length && compare(keys[i], ids[i], newKeys[j], newIds[j]) <= 0)) {
+                mergedKeys[k] = keys[i];
+                mergedIds[k] = ids[i++];
+            } else {
+                mergedKeys[k] = newKeys[j];
+                mergedIds[k] = newIds[j++];
+            }
+        }
+        return new ExactAddressIndex(mergedKeys, mergedIds);
+    }
+
+    public static long key(String normalizedAddress) {
+        return Hashing.farmHashFingerprint64().hashString(normalizedAddress, StandardCharsets.UTF_8).asLong();
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * 规范化地址对应的表A ID（升序），没有返回空数组
+     */
+    public long[] find(String normalizedAddress) {
+        if (keys.length == 0 || normalizedAddress.isEmpty()) {
+            return NO_IDS;
+        }
+        long key = key(normalizedAddress);
+        int bucket = bucketOf(key);
+        int end = bucketStarts[bucket + 1];
+        for (int i = bucketStarts[bucket]; i < end; i++) {
+            if (keys[i] == key) {
+                int to = i + 1;
+                while (to < end && keys[to] == key) {
+                    to++;
+                }
+                return Arrays.copyOfRange(ids, i, to);
+            }
+        }
+        return NO_IDS;
+    }
+
+    private int bucketOf(long key) {
+        return (int) (key >>> (64 - bucketBits));
+    }
+
+    /**
+     * 按 (指纹无符号, ID) 比较；指纹按无符号排序才与桶号（高位）顺序一致
+     */
+    private static int compare(long key1, long id1, long key2, long id2) {
+        return key1 != key2 ? Long.compareUnsigned(key1, key2) : Long.compare(id1, id2);
+    }
+
+    /**
+     * 对两个并列数组的 [low, high] 区间原地快速排序，避免为每条地址创建对象
+     */
+    private static void sort(long[] keys, long[] ids, int low, int high) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long pivotKey = keys[mid];
+            long pivotId = ids[mid];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(keys[i], ids[i], pivotKey, pivotId) < 0) {
+                    i++;
+                }
+                while (compare(keys[j], ids[j], pivotKey, pivotId) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, i, j);
+                    swap(ids, i++, j--);
+                }
+            }
+            // 先递归较短的一段，栈深度不超过 log n
+            if (j - low < high - i) {
+                sort(keys, ids, low, j);
+                low = i;
+            } else {
+                sort(keys, ids, i, high);
+                high = j;
+            }
+        }
+    }
+
+    private static void swap(long[] values, int i, int j) {
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    /**
+     * 按内存布局估算占用字节数
+     */
+    public long estimateBytes() {
+        return CompactAddressTree.arrayBytes(keys.length, 8) + CompactAddressTree.arrayBytes(ids.length, 8)
+                + CompactAddressTree.arrayBytes(bucketStarts.length, 4);
+    }
+
+    // ================ 序列化（随地址树写入快照） ================
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            out.writeLong(keys[i]);
+            out.writeLong(ids[i]);
+        }
+    }
+
+    public static ExactAddressIndex readFrom(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        long[] keys = new long[size];
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = buffer.getLong();
+            ids[i] = buffer.getLong();
+            if (i > 0 && Long.compareUnsigned(keys[i - 1], keys[i]) > 0) {
+                throw new IllegalArgumentException("精确地址索引未排序");
+            }
+        }
+        return size == 0 ? EMPTY : new ExactAddressIndex(keys, ids);
+    }
+}
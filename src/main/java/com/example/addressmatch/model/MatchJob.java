@@ -0,0 +1,105 @@
+package com.example.addressmatch.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步匹配任务的状态与进度
+ *
+ * 由执行线程（阶段、状态）和流水线匹配线程（已处理条数）更新，查询接口随时读取，字段均为volatile或原子计数。
+ * 取消为协作式：只设置标记，执行方在阶段之间和每个分块前后检查。
+ */
+@Data
+public class MatchJob {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    public static final String SUCCEEDED = "SUCCEEDED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    private final long id;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    private volatile String status = QUEUED;
+    // 当前阶段，与匹配日志中的阶段一致
+    private volatile String stage;
+    private volatile Long runId;
+    private volatile long total;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong successMatch = new AtomicLong();
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    // 流水线匹配开始时间（毫秒）和当时已处理的条数（续跑时为断点计数），用于计算吞吐量
+    private volatile long matchStartMillis;
+    private volatile long matchStartProcessed;
+    // 流水线开始前去重扫描得到的去重率（无需再次匹配的表B行占比）
+    private volatile double dedupRatio;
+    private volatile boolean cancelRequested;
+    private volatile String error;
+    // 完成后的匹配统计
+    private volatile Map<String, Object> result;
+
+    public MatchJob(long id) {
+        this.id = id;
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getSuccessMatch() {
+        return successMatch.get();
+    }
+
+    /**
+     * 流水线开始：设置总数，续跑时进度从断点的累计计数开始
+     */
+    public void resumeFrom(long total, long processedBefore, long successBefore, long startMillis) {
+        this.total = total;
+        processed.set(processedBefore);
+        successMatch.set(successBefore);
+        this.matchStartProcessed = processedBefore;
+        this.matchStartMillis = startMillis;
+    }
+
+    public void addProcessed(boolean success) {
+        processed.incrementAndGet();
+        if (success) {
+            successMatch.incrementAndGet();
+        }
+    }
+
+    /**
+     * 流水线匹配阶段的吞吐量（条/秒）
+     */
+    public double getThroughput() {
+        long start = matchStartMillis;
+        if (start == 0) {
+            return 0;
+        }
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        return (processed.get() - matchStartProcessed) * 1000.0 / elapsed;
+    }
+
+    public boolean isActive() {
+        return QUEUED.equals(status) || RUNNING.equals(status);
+    }
+
+    public void startStage(String stage) {
+        checkCancelled();
+        this.stage = stage;
+    }
+
+    /**
+     * 已请求取消时抛出 CancellationException
+     */
+    public void checkCancelled() {
+        if (cancelRequested) {
+            throw new CancellationException("匹配任务" + id + "已取消");
+        }
+    }
+}
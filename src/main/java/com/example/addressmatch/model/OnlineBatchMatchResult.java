@@ -0,0 +1,22 @@
+package com.example.addressmatch.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量在线匹配结果，results 与请求中的地址一一对应
+ */
+@Data
+@NoArgsConstructor
+public class OnlineBatchMatchResult {
+    private long treeVersion;
+    private int matchedCount;
+    // 超出延迟预算而未匹配的地址数
+    private int skippedCount;
+    private boolean overBudget;
+    private double elapsedMs;
+    private List<OnlineMatchResult> results = new ArrayList<>();
+}
@@ -0,0 +1,18 @@
+package com.example.addressmatch.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 在线匹配请求：单条时使用 address，批量时使用 addresses
+ */
+@Data
+@NoArgsConstructor
+public class OnlineMatchRequest {
+    private String address;
+    private List<String> addresses;
+    // 返回的候选数，为空时使用默认值
+    private Integer topK;
+}
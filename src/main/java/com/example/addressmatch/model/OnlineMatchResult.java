@@ -0,0 +1,36 @@
+package com.example.addressmatch.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单条地址的在线匹配结果
+ */
+@Data
+@NoArgsConstructor
+public class OnlineMatchResult {
+
+    public static final String STATUS_OK = "OK";
+    // 批量请求超出延迟预算，该地址未匹配
+    public static final String STATUS_SKIPPED = "SKIPPED";
+
+    private String address;
+    private String status;
+    // 最佳候选达到成功阈值（与批量匹配写入表C的条件一致）
+    private boolean matched;
+    private List<Candidate> candidates = new ArrayList<>();
+    private long treeVersion;
+    private double elapsedMs;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Candidate {
+        private Long aId;
+        private Double score;
+    }
+}
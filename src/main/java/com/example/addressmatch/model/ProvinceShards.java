@@ -0,0 +1,182 @@
+package com.example.addressmatch.model;
+
+import com.example.addressmatch.util.CommonUtils;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 按第一级组件（省）分片的地址树目录
+ *
+ * 每个分片是一棵只含一个省的紧凑树（根节点下只有该省节点），冻结后写入单独的文件，
+ * 匹配时按需通过 loader 加载（由分片缓存按内存预算淘汰），不常用的省不占堆内存。
+ * 表B按解析出的省、市路由到整树遍历第一、二级可能到达的分片（见 routeIndexes），
+ * 路由多出的分片在分片树内的第一级就被过滤，不影响结果，只是多加载。
+ * 目录本身只读，增量插入的地址放在增量树中，不修改分片，下次全量构建时重写。
+ */
+public final class ProvinceShards {
+
+    private final List<Shard> shards;
+    // 市名 -> 包含该市的分片下标（升序）
+    private final Map<String, int[]> cityRoutes;
+    private final Function<Shard, CompactAddressTree> loader;
+
+    public ProvinceShards(List<Shard> shards, Function<Shard, CompactAddressTree> loader) {
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.loader = loader;
+        Map<String, List<Integer>> routes = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            for (String city : shards.get(i).getCities()) {
+                routes.computeIfAbsent(city, c -> new ArrayList<>()).add(i);
+            }
+        }
+        this.cityRoutes = new HashMap<>(routes.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : routes.entrySet()) {
+            this.cityRoutes.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public Shard find(String province) {
+        for (Shard shard : shards) {
+            if (shard.getProvince().equals(province)) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 表B组件路由到的分片树，按 routeIndexes 的顺序返回，必要时加载
+     */
+    public List<CompactAddressTree> route(List<String> components, int maxEdits) {
+        List<CompactAddressTree> trees = new ArrayList<>();
+        for (int shard : routeIndexes(components, maxEdits)) {
+            trees.add(loader.apply(shards.get(shard)));
+        }
+        return trees;
+    }
+
+    /**
+     * 整树遍历在第一、二级可能经过的分片：
+     * - 省非空：省名与分片名相同、互相包含（逐级遍历的模糊匹配），或近似相同（近似匹配兜底的
+     *   CommonUtils.isSimilar，maxEdits 为整条路径的编辑次数上限）的分片；
+     * - 省为空、市非空：逐级遍历第一级展开全部省，第二级只保留市名相同或互相包含的，
+     *   因此取含有这样的市的分片，加上省节点本身带地址（第一级就能打分）的分片；
+     *   近似匹配兜底只走第一级的占位节点，再加上占位省的分片；
+     * - 省、市都为空：全部分片。
+     * 名称与省完全相同的分片排在最前，其余按整树中省节点的顺序，与整树第一级精确匹配在前、
+     * 模糊（近似）匹配按子节点顺序在后的展开顺序一致
+     */
+    int[] routeIndexes(List<String> components, int maxEdits) {
+        String province = components.isEmpty() ? "" : components.get(0);
+        String city = components.size() < 2 ? "" : components.get(1);
+        boolean[] matched = new boolean[shards.size()];
+        int first = -1;
+        if (!province.isEmpty()) {
+            for (int i = 0; i < shards.size(); i++) {
+                String name = shards.get(i).getProvince();
+                if (name.equals(province)) {
+                    first = i;
+                }
+                matched[i] = CommonUtils.isFuzzyMatch(province, name)
+                        || (maxEdits > 0 && CommonUtils.isSimilar(province, name, maxEdits));
+            }
+        } else if (city.isEmpty()) {
+            Arrays.fill(matched, true);
+        } else {
+            int[] exact = cityRoutes.get(city);
+            if (exact != null) {
+                for (int shard : exact) {
+                    matched[shard] = true;
+                }
+            }
+            for (Map.Entry<String, int[]> entry : cityRoutes.entrySet()) {
+                if (CommonUtils.isFuzzyMatch(city, entry.getKey())) {
+                    for (int shard : entry.getValue()) {
+                        matched[shard] = true;
+                    }
+                }
+            }
+            String placeholder = CompactAddressTree.placeholderName(1);
+            for (int i = 0; i < shards.size(); i++) {
+                matched[i] |= shards.get(i).hasProvinceAddresses() || shards.get(i).getProvince().equals(placeholder);
+            }
+        }
+
+        int[] routed = new int[shards.size()];
+        int count = 0;
+        if (first >= 0) {
+            routed[count++] = first;
+        }
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i] && i != first) {
+                routed[count++] = i;
+            }
+        }
+        return Arrays.copyOf(routed, count);
+    }
+
+    /**
+     * 一个省的分片：文件位置、估算内存、节点数（含分片树自己的根）、最大深度、地址数、
+     * 该省下的市名和省节点本身是否为带地址的叶子（用于路由）
+     */
+    public static final class Shard {
+        private final String province;
+        private final Path file;
+        private final long bytes;
+        private final int nodeCount;
+        private final int maxDepth;
+        private final int addressCount;
+        private final List<String> cities;
+        private final boolean provinceAddresses;
+
+        public Shard(String province, Path file, long bytes, int nodeCount, int maxDepth, int addressCount,
+                     List<String> cities, boolean provinceAddresses) {
+            this.province = province;
+            this.file = file;
+            this.bytes = bytes;
+            this.nodeCount = nodeCount;
+            this.maxDepth = maxDepth;
+            this.addressCount = addressCount;
+            this.cities = cities;
+            this.provinceAddresses = provinceAddresses;
+        }
+
+        public String getProvince() {
+            return province;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        public int getAddressCount() {
+            return addressCount;
+        }
+
+        public List<String> getCities() {
+            return cities;
+        }
+
+        public boolean hasProvinceAddresses() {
+            return provinceAddresses;
+        }
+    }
+}
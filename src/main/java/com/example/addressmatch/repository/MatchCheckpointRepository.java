@@ -0,0 +1,9 @@
+package com.example.addressmatch.repository;
+
+import com.example.addressmatch.entity.MatchCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MatchCheckpointRepository extends JpaRepository<MatchCheckpoint, Long> {
+}
@@ -0,0 +1,28 @@
+package com.example.addressmatch.repository;
+
+import com.example.addressmatch.entity.MatchRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MatchRunRepository extends JpaRepository<MatchRun, Long> {
+    Optional<MatchRun> findFirstByStatusOrderByIdDesc(String status);
+    List<MatchRun> findByStatusOrderByIdDesc(String status);
+    List<MatchRun> findByStatusIn(Collection<String> statuses);
+    List<MatchRun> findAllByOrderByIdDesc();
+
+    @Modifying
+    @Query("UPDATE MatchRun r SET r.status = :newStatus WHERE r.status = :oldStatus")
+    int updateStatus(@Param("oldStatus") String oldStatus, @Param("newStatus") String newStatus);
+
+    @Modifying
+    @Query("UPDATE MatchRun r SET r.status = :newStatus WHERE r.id = :id AND r.status = :oldStatus")
+    int updateStatus(@Param("id") Long id, @Param("oldStatus") String oldStatus, @Param("newStatus") String newStatus);
+}
\ No newline at end of file
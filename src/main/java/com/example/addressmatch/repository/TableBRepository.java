@@ -1,9 +1,15 @@
 package com.example.addressmatch.repository;
 
 import com.example.addressmatch.entity.TableB;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface TableBRepository extends JpaRepository<TableB, Long> {
+
+    // 主键游标分页：WHERE id > :lastId ORDER BY id LIMIT :size
+    List<TableB> findByIdGreaterThanOrderByIdAsc(Long lastId, Pageable pageable);
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -17,4 +18,9 @@ public interface TableCRepository extends JpaRepository<TableC, Long> {
 
 
     void deleteAll();
+
+    long countByRunId(Long runId);
+
+    @Query("SELECT t FROM TableC t WHERE t.runId = :runId AND t.aId IN :aIds")
+    List<TableC> findByRunIdAndAIdIn(@Param("runId") Long runId, @Param("aIds") Collection<Long> aIds);
 }
\ No newline at end of file
@@ -10,4 +10,6 @@ import java.util.List;
 public interface TableDRepository extends JpaRepository<TableD, Long> {
     List<TableD> findByStatus(String status);
     long countByStatus(String status);
+    List<TableD> findByRunIdAndStatus(Long runId, String status);
+    long countByRunIdAndStatus(Long runId, String status);
 }
\ No newline at end of file
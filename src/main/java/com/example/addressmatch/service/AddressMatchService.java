@@ -1,15 +1,21 @@
 package com.example.addressmatch.service;
 
 import com.example.addressmatch.entity.*;
-import com.example.addressmatch.model.AddressTreeNode;
+import com.example.addressmatch.model.AddressTreeSnapshot;
 import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.model.MatchJob;
 import com.example.addressmatch.repository.*;
+import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 @Slf4j
 @Service
@@ -20,12 +26,28 @@ public class AddressMatchService {
     @Autowired private TableCRepository tableCRepo;
     @Autowired private TableDRepository tableDRepo;
     @Autowired private AddressTreeBuilder treeBuilder;
-    @Autowired private MultiGranularityMatcher matcher;
+    @Autowired private MatchEngine matcher;
+    @Autowired private MatchPipeline matchPipeline;
+    @Autowired private ResultWriter resultWriter;
+    @Autowired private MatchRunManager runManager;
+    @Autowired private TreeSnapshotStore snapshotStore;
+    @Autowired private MatchMetrics metrics;
 
-    @Transactional
-    public void performSimpleMatch() {
+    // 人工确认加入表A后是否自动增量重匹配
+    @Value("${app.match.incremental-on-approve:true}")
+    private boolean incrementalOnApprove;
+
+    /**
+     * 全量匹配，进度写入 job。不在一个大事务中执行：结果按页提交并记录断点，
+     * 异常中断的版本保持未完成状态，下次匹配时（表A未变化）从断点继续；
+     * job 请求取消后在下一个阶段或分块边界停止，本次版本作废
+     */
+    public void performSimpleMatch(MatchJob job) {
         long totalStart = System.currentTimeMillis();
         log.info("=== 开始地址匹配（缓存优化版） ===");
+        // 本次匹配固定使用的地址树版本，重建期间其他匹配不受影响
+        AddressTreeSnapshot.Lease tree = null;
+        MatchCheckpoint checkpoint = null;
 
         try {
             // ================ 清理缓存 ================
@@ -33,166 +55,131 @@ public class AddressMatchService {
             log.info("已清理匹配器缓存");
             // ==============================================
 
-            // 阶段1：清空历史数据
+            // 阶段1：续跑未完成的版本，或创建新的结果版本（旧版本在新版本生效后由后台清理）
+            job.startStage("创建结果版本");
             long stage1Start = System.currentTimeMillis();
-            tableCRepo.deleteAll();
-            tableDRepo.deleteAll();
+            // 指纹在加载表A之前取得，断点和地址树快照都以它为准
+            TreeSnapshotStore.Fingerprint fingerprint = snapshotStore.currentFingerprint();
+            checkpoint = runManager.findResumable(fingerprint);
+            boolean resumed = checkpoint != null;
+            if (!resumed) {
+                checkpoint = runManager.startRun(fingerprint);
+            }
+            job.setRunId(checkpoint.getRunId());
             long stage1Time = System.currentTimeMillis() - stage1Start;
-            log.info("阶段1-清空数据: {}ms", stage1Time);
+            if (resumed) {
+                log.info("阶段1-从断点续跑结果版本: {}ms, 版本号: {}, 已提交{}条(表B ID<={})", stage1Time,
+                        checkpoint.getRunId(), checkpoint.getProcessed(), checkpoint.getLastBId());
+            } else {
+                log.info("阶段1-创建结果版本: {}ms, 版本号: {}", stage1Time, checkpoint.getRunId());
+            }
 
-            // 阶段2：加载数据
+            // 阶段2：表A未变化时直接加载地址树快照，否则加载表A（表B在阶段4中流式分页读取）
+            job.startStage("加载数据");
             long stage2Start = System.currentTimeMillis();
-            List<TableA> tableAList = tableARepo.findAll();
-            List<TableB> tableBList = tableBRepo.findAll();
+            tree = treeBuilder.loadSnapshot(fingerprint);
+            boolean fromSnapshot = tree != null;
+            List<TableA> tableAList = fromSnapshot ? Collections.emptyList() : tableARepo.findAll();
             long stage2Time = System.currentTimeMillis() - stage2Start;
-            log.info("阶段2-加载数据: {}ms, 表A:{}条, 表B:{}条",
-                    stage2Time, tableAList.size(), tableBList.size());
+            metrics.recordStage("create_run", stage1Time);
+            log.info("阶段2-加载数据: {}ms, 表A:{}条{}", stage2Time, fingerprint.getCount(),
+                    fromSnapshot ? "（使用地址树快照）" : "");
 
-            // 阶段3：构建地址树
+            // 阶段3：构建并发布新版本地址树，保存快照
+            job.startStage("构建地址树");
             long stage3Start = System.currentTimeMillis();
-            treeBuilder.clearTree();
-            treeBuilder.buildAddressTree(tableAList);
-            AddressTreeNode root = treeBuilder.getRoot();
+            if (!fromSnapshot) {
+                tree = treeBuilder.buildAddressTree(tableAList);
+                treeBuilder.saveSnapshot(tree.getTree(), fingerprint);
+            }
             long stage3Time = System.currentTimeMillis() - stage3Start;
+            metrics.recordStage("load_data", stage2Time);
+            metrics.recordStage("build_tree", stage3Time);
             log.info("阶段3-构建地址树: {}ms", stage3Time);
 
-            // 准备结果集合
-            List<TableC> tableCResults = new ArrayList<>();
-            List<TableD> tableDResults = new ArrayList<>();
-
-            // 阶段4：匹配计算（带缓存）
+            // 阶段4：流水线匹配（加载表B / 匹配 / 写入表C表D 同时进行）
+            job.startStage("流水线匹配");
             long stage4Start = System.currentTimeMillis();
-            int processed = 0;
-            int successMatch = 0;
-            int failedMatch = 0;
-
-            // 每处理一定数量记录一次时间
-            int logInterval = Math.max(10, tableBList.size() / 10);
-
-            for (TableB tableB : tableBList) {
-                processed++;
-                Long bId = tableB.getId();
-                String addressB = tableB.getAddressB();
-
-                try {
-                    // 单条匹配开始时间
-                    long matchStart = System.currentTimeMillis();
-                    List<MatchCandidate> candidates = matcher.matchAddress(addressB, root);
-                    long matchTime = System.currentTimeMillis() - matchStart;
-
-                    // 记录慢查询（超过100ms）
-                    if (matchTime > 100) {
-                        log.warn("慢匹配: {}ms, 地址: {}", matchTime, addressB);
-                    }
-
-                    if (candidates != null && !candidates.isEmpty()) {
-                        MatchCandidate best = candidates.get(0);
-
-                        if (best.getScore() >= 0.95) {
-                            // 成功匹配
-                            TableC result = new TableC();
-                            result.setAId(best.getTableA().getId());
-                            result.setAddressB(addressB);
-                            result.setMatchScore(best.getScore());
-                            tableCResults.add(result);
-                            successMatch++;
-                        } else {
-                            // 低分匹配
-                            TableD failed = new TableD();
-                            failed.setBId(bId);
-                            failed.setAddressB(addressB);
-                            failed.setStatus("PENDING");
-                            tableDResults.add(failed);
-                            failedMatch++;
-                        }
-                    } else {
-                        // 无匹配
-                        TableD failed = new TableD();
-                        failed.setBId(bId);
-                        failed.setAddressB(addressB);
-                        failed.setStatus("PENDING");
-                        tableDResults.add(failed);
-                        failedMatch++;
-                    }
-
-                    // 定期输出进度
-                    if (processed % logInterval == 0) {
-                        long currentTime = System.currentTimeMillis() - stage4Start;
-                        double speed = processed * 1000.0 / currentTime;
-                        log.info("匹配进度: {}/{} ({}%), 耗时: {}ms, 速度: {:.1f}条/秒",
-                                processed, tableBList.size(),
-                                (processed * 100) / tableBList.size(),
-                                currentTime, speed);
-                    }
-
-                } catch (Exception e) {
-                    log.error("处理失败 BID: {}", bId, e);
-                    TableD failed = new TableD();
-                    failed.setBId(bId);
-                    failed.setAddressB(addressB);
-                    failed.setStatus("PENDING");
-                    tableDResults.add(failed);
-                    failedMatch++;
-                }
-            }
-
+            resultWriter.resetStats();
+            long exactHitsBefore = matcher.getExactHitCount();
+            MatchPipeline.PipelineResult pipelineResult = matchPipeline.run(tree, checkpoint, job);
             long stage4Time = System.currentTimeMillis() - stage4Start;
-            log.info("阶段4-匹配计算完成: {}ms", stage4Time);
-            log.info("匹配统计: 成功={}, 失败={}, 平均速度={:.1f}条/秒",
-                    successMatch, failedMatch, tableBList.size() * 1000.0 / stage4Time);
+            int processed = pipelineResult.getProcessed();
+            metrics.recordStage("pipeline", stage4Time);
+            log.info("阶段4-流水线匹配完成: {}ms, 其中加载表B: {}ms, 写入: {}ms",
+                    stage4Time, pipelineResult.getLoadTime().get(), pipelineResult.getWriteTime());
+            log.info("匹配统计: 成功={}, 失败={}, 平均速度={}条/秒",
+                    pipelineResult.getSuccessMatch(), pipelineResult.getFailedMatch(),
+                    String.format("%.1f", processed * 1000.0 / Math.max(1, stage4Time)));
+            log.info("表B去重: 不同地址{}个, 去重率{}%, 扫描耗时{}ms",
+                    pipelineResult.getDistinctAddresses(),
+                    String.format("%.1f", pipelineResult.getDedupRatio() * 100), pipelineResult.getDedupTime());
+            log.info("精确地址命中: {}条（跳过解析和地址树匹配，含同时进行的在线匹配）",
+                    matcher.getExactHitCount() - exactHitsBefore);
+            Map<String, Object> writerStats = resultWriter.getStats();
+            log.info("保存表C: {}条, 保存表D: {}条, 写入方式: {}, 写入速度: {}行/秒",
+                    pipelineResult.getSavedTableC(), pipelineResult.getSavedTableD(),
+                    writerStats.get("mode"), String.format("%.1f", (Double) writerStats.get("rowsPerSecond")));
+
+            // 切换到新版本
+            job.startStage("发布结果版本");
+            long stage5Start = System.currentTimeMillis();
+            runManager.publish(checkpoint.getRunId(), pipelineResult.getSavedTableC(), pipelineResult.getSavedTableD());
+            metrics.recordStage("publish", System.currentTimeMillis() - stage5Start);
 
             // ================ 输出缓存统计 ================
             Map<String, Object> cacheStats = matcher.getCacheStats();
-            log.info("缓存统计: 解析缓存={}条, 匹配缓存={}条",
-                    cacheStats.get("parseCacheSize"), cacheStats.get("matchCacheSize"));
-            // ==================================================
-
-            // 阶段5：批量保存
-            long stage5Start = System.currentTimeMillis();
-            if (!tableCResults.isEmpty()) {
-                tableCRepo.saveAll(tableCResults);
-                log.info("保存表C: {}条", tableCResults.size());
+            if (cacheStats.containsKey("matchCacheHitRate")) {
+                log.info("缓存统计: 解析缓存={}条(命中率{}, 淘汰{}条), 匹配缓存={}条(命中率{}, 淘汰{}条)",
+                        cacheStats.get("parseCacheSize"),
+                        String.format("%.2f", (Double) cacheStats.get("parseCacheHitRate")),
+                        cacheStats.get("parseCacheEvictionCount"),
+                        cacheStats.get("matchCacheSize"),
+                        String.format("%.2f", (Double) cacheStats.get("matchCacheHitRate")),
+                        cacheStats.get("matchCacheEvictionCount"));
+            } else {
+                log.info("匹配引擎{}统计: {}", matcher.getName(), cacheStats);
             }
-            if (!tableDResults.isEmpty()) {
-                tableDRepo.saveAll(tableDResults);
-                log.info("保存表D: {}条", tableDResults.size());
-            }
-            long stage5Time = System.currentTimeMillis() - stage5Start;
-            log.info("阶段5-批量保存: {}ms", stage5Time);
+            // ==================================================
 
             // 总耗时统计
-            long totalTime = System.currentTimeMillis() - totalStart;
+            long totalTime = Math.max(1, System.currentTimeMillis() - totalStart);
             log.info("=== 匹配完成 ===");
-            log.info("总耗时: {}ms ({:.1f}秒)", totalTime, totalTime / 1000.0);
+            metrics.recordStage("total", totalTime);
+            log.info("总耗时: {}ms ({}秒)", totalTime, String.format("%.1f", totalTime / 1000.0));
             log.info("各阶段耗时占比:");
-            log.info("  清空数据: {}ms ({}%)", stage1Time, (stage1Time * 100) / totalTime);
-            log.info("  加载数据: {}ms ({}%)", stage2Time, (stage2Time * 100) / totalTime);
+            log.info("  创建版本: {}ms ({}%)", stage1Time, (stage1Time * 100) / totalTime);
+            log.info("  加载表A: {}ms ({}%)", stage2Time, (stage2Time * 100) / totalTime);
             log.info("  构建地址树: {}ms ({}%)", stage3Time, (stage3Time * 100) / totalTime);
-            log.info("  匹配计算: {}ms ({}%)", stage4Time, (stage4Time * 100) / totalTime);
-            log.info("  批量保存: {}ms ({}%)", stage5Time, (stage5Time * 100) / totalTime);
-            log.info("平均速度: {:.1f}条/秒", tableBList.size() * 1000.0 / totalTime);
+            log.info("  流水线匹配: {}ms ({}%)", stage4Time, (stage4Time * 100) / totalTime);
+            log.info("平均速度: {}条/秒", String.format("%.1f", processed * 1000.0 / totalTime));
 
+        } catch (CancellationException e) {
+            if (checkpoint != null) {
+                runManager.markFailed(checkpoint.getRunId());
+            }
+            log.info("匹配已取消，本次结果版本作废");
+            throw e;
         } catch (Exception e) {
             log.error("匹配流程异常", e);
+            if (checkpoint != null) {
+                log.info("结果版本{}未完成，下次匹配将从断点继续", checkpoint.getRunId());
+            }
             throw new RuntimeException("地址匹配失败", e);
+        } finally {
+            if (tree != null) {
+                tree.close();
+            }
         }
     }
 
     /**
-     * 重新匹配（在表A更新后）
-     */
-    @Transactional
-    public void reMatchAll() {
-        log.info("重新执行匹配...");
-        performSimpleMatch();
-    }
-
-    /**
-     * 将表D地址添加到表A（人工确认后）
+     * 将表D地址添加到表A（人工确认后），并对受影响的地址做增量重匹配。
+     * 不与全量匹配互斥，应通过 MatchJobService.addTableDToTableA 调用
      */
     @Transactional
     public int addTableDToTableA(List<Long> tableDIds) {
-        int added = 0;
+        List<TableA> newAddresses = new ArrayList<>();
 
         for (Long id : tableDIds) {
             TableD tableD = tableDRepo.findById(id).orElse(null);
@@ -200,22 +187,139 @@ public class AddressMatchService {
                 // 添加到表A
                 TableA newAddress = new TableA();
                 newAddress.setAddressA(tableD.getAddressB());
-                tableARepo.save(newAddress);
+                newAddresses.add(tableARepo.save(newAddress));
 
                 // 更新表D状态
                 tableD.setStatus("ADDED");
                 tableDRepo.save(tableD);
-                added++;
             }
         }
 
+        int added = newAddresses.size();
         if (added > 0) {
             log.info("已添加 {} 个地址到表A", added);
+            if (incrementalOnApprove) {
+                incrementalRematch(newAddresses);
+            }
         }
 
         return added;
     }
 
+    /**
+     * 增量重匹配：新地址插入现有地址树，只重匹配当前版本中待审核的表D记录
+     * 以及匹配到受影响子树的表C记录。插入新地址的地址树版本在事务提交后才发布，
+     * 事务回滚时丢弃，在线匹配和其他增量匹配不会用到未提交的表A ID
+     */
+    @Transactional
+    public void incrementalRematch(List<TableA> newAddresses) {
+        long start = System.currentTimeMillis();
+        Long runId = runManager.getActiveRunId();
+        if (runId == null) {
+            log.info("尚无生效的结果版本，跳过增量重匹配");
+            return;
+        }
+
+        if (!treeBuilder.isBuilt()) {
+            // 服务重启后地址树为空，先用已有表A地址构建
+            Set<Long> newIds = new HashSet<>();
+            newAddresses.forEach(address -> newIds.add(address.getId()));
+            List<TableA> existing = new ArrayList<>();
+            for (TableA address : tableARepo.findAll()) {
+                if (!newIds.contains(address.getId())) {
+                    existing.add(address);
+                }
+            }
+            treeBuilder.buildAddressTree(existing).close();
+        }
+
+        // 在待发布的新版本上重匹配，匹配缓存按版本区分，无需逐条失效
+        AddressTreeBuilder.PendingInsert pending = treeBuilder.prepareInsert(newAddresses);
+        try {
+            rematchAffected(runId, pending.getAffectedAddressIds(), pending.getTree());
+        } catch (RuntimeException | Error e) {
+            pending.discard();
+            throw e;
+        }
+        publishAfterCommit(pending);
+
+        log.info("增量重匹配完成: {}ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 事务提交后发布新版本，回滚时丢弃；没有事务时立即发布
+     */
+    private void publishAfterCommit(AddressTreeBuilder.PendingInsert pending) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pending.publish();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    pending.publish();
+                } else {
+                    pending.discard();
+                }
+            }
+        });
+    }
+
+    private void rematchAffected(Long runId, Set<Long> affectedIds, AddressTreeSnapshot.Lease tree) {
+        // 受影响的表C记录：当前匹配到受影响子树中的地址
+        List<TableC> affectedC = new ArrayList<>();
+        List<Long> affectedAIds = new ArrayList<>(affectedIds);
+        for (List<Long> ids : Lists.partition(affectedAIds, 1000)) {
+            affectedC.addAll(tableCRepo.findByRunIdAndAIdIn(runId, ids));
+        }
+        List<TableD> pendingD = tableDRepo.findByRunIdAndStatus(runId, "PENDING");
+
+        // 表C：找到更好的匹配则更新
+        List<TableC> updatedC = new ArrayList<>();
+        for (TableC tableC : affectedC) {
+            MatchCandidate best = bestMatch(tableC.getAddressB(), tree);
+            if (best != null && (!best.getTableA().getId().equals(tableC.getAId())
+                    || !best.getScore().equals(tableC.getMatchScore()))) {
+                tableC.setAId(best.getTableA().getId());
+                tableC.setMatchScore(best.getScore());
+                updatedC.add(tableC);
+            }
+        }
+        tableCRepo.saveAll(updatedC);
+
+        // 表D：匹配成功的移入表C
+        List<TableC> movedC = new ArrayList<>();
+        List<Long> resolvedD = new ArrayList<>();
+        for (TableD tableD : pendingD) {
+            MatchCandidate best = bestMatch(tableD.getAddressB(), tree);
+            if (best != null) {
+                TableC result = new TableC(best.getTableA().getId(), tableD.getAddressB(), best.getScore());
+                result.setRunId(runId);
+                movedC.add(result);
+                resolvedD.add(tableD.getId());
+            }
+        }
+        resultWriter.writeTableC(movedC);
+        for (List<Long> ids : Lists.partition(resolvedD, 1000)) {
+            tableDRepo.deleteAllByIdInBatch(ids);
+        }
+
+        log.info("增量重匹配: 表C {}条(更新{}条), 表D {}条(移入表C {}条)",
+                affectedC.size(), updatedC.size(), pendingD.size(), movedC.size());
+    }
+
+    /**
+     * 返回达到成功阈值的最佳候选，否则返回null
+     */
+    private MatchCandidate bestMatch(String addressB, AddressTreeSnapshot.Lease tree) {
+        List<MatchCandidate> candidates = matcher.matchAddress(addressB, tree);
+        if (candidates != null && !candidates.isEmpty() && candidates.get(0).getScore() >= 0.95) {
+            return candidates.get(0);
+        }
+        return null;
+    }
+
     /**
      * 从表D移除地址（人工驳回）
      */
@@ -245,10 +349,12 @@ public class AddressMatchService {
     public Map<String, Object> getSimpleStats() {
         Map<String, Object> stats = new HashMap<>();
 
+        Long activeRunId = runManager.getActiveRunId();
         long totalB = tableBRepo.count();
-        long inTableC = tableCRepo.count();
-        long inTableD = tableDRepo.countByStatus("PENDING");
+        long inTableC = tableCRepo.countByRunId(activeRunId);
+        long inTableD = tableDRepo.countByRunIdAndStatus(activeRunId, "PENDING");
 
+        stats.put("activeRunId", activeRunId);
         stats.put("totalBRecords", totalB);
         stats.put("inTableC", inTableC);
         stats.put("inTableD", inTableD);
@@ -257,6 +363,27 @@ public class AddressMatchService {
         return stats;
     }
 
+    /**
+     * 当前生效版本中待审核的表D记录
+     */
+    public List<TableD> getPendingTableD() {
+        return tableDRepo.findByRunIdAndStatus(runManager.getActiveRunId(), "PENDING");
+    }
+
+    /**
+     * 所有结果版本
+     */
+    public List<MatchRun> listRuns() {
+        return runManager.listRuns();
+    }
+
+    /**
+     * 回滚到上一个结果版本
+     */
+    public MatchRun rollbackRun() {
+        return runManager.rollback();
+    }
+
     /**
      * 获取缓存统计信息
      */
@@ -264,6 +391,13 @@ public class AddressMatchService {
         return matcher.getCacheStats();
     }
 
+    /**
+     * 获取地址树内存估算（可变树与紧凑树对比）
+     */
+    public Map<String, Object> getTreeMemoryReport() {
+        return treeBuilder.getMemoryReport();
+    }
+
     /**
      * 清理缓存
      */
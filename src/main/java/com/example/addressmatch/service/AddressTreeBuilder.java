@@ -2,12 +2,38 @@ package com.example.addressmatch.service;
 
 import com.example.addressmatch.entity.TableA;
 import com.example.addressmatch.model.AddressTreeNode;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.CompactAddressTree;
+import com.example.addressmatch.model.ExactAddressIndex;
+import com.example.addressmatch.model.ProvinceShards;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * 地址树构建与版本发布
+ *
+ * 新树在调用线程内单独构建（可变树只在构建期间存在），冻结后通过一次原子引用替换发布为新版本。
+ * 匹配方用 acquire 固定开始时的版本，重建期间不受影响；旧版本在最后一个读取方结束后释放。
+ * 增量插入的地址放在单独的增量树中，与全量树（或分片）一起发布，每次插入只解冻、重新冻结增量树，
+ * 代价与上次全量构建后增量插入的地址数成正比；下次全量构建时并入全量树。
+ * 全量构建和增量插入之间串行，读取方不加锁。增量插入可以先准备新版本（prepareInsert），
+ * 由调用方在数据库事务提交后再发布，回滚时丢弃，期间持有写锁，其他增量插入和全量构建等待。
+ * 启用按省分片（app.tree.sharding.enabled）时，各省子树冻结后写入分片文件（TreeShardStore），
+ * 发布的版本只含根节点、全国的精确地址索引和分片目录，各省的树在匹配时按需加载。
+ * 服务启动完成后，表A指纹与快照一致时直接加载快照发布，在线匹配无需等待第一次批量匹配。
+ */
 @Slf4j
 @Service
 public class AddressTreeBuilder {
@@ -15,39 +41,357 @@ public class AddressTreeBuilder {
     @Autowired
     private AddressParserService addressParser;
 
-    private AddressTreeNode root = new AddressTreeNode("中国");
+    @Autowired
+    private TreeSnapshotStore snapshotStore;
+
+    @Autowired
+    private TreeShardStore shardStore;
+
+    // 当前版本
+    private final AtomicReference<AddressTreeSnapshot> current = new AtomicReference<>();
+
+    // 已被替换、仍有读取方持有的旧版本
+    private final Set<AddressTreeSnapshot> retired = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong versionSequence = new AtomicLong();
 
-    public void buildAddressTree(List<TableA> addresses) {
+    // 构建/增量插入互斥，避免增量插入基于旧版本覆盖掉并发的全量构建
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // 最近一次全量构建时两种布局的内存估算
+    private volatile Map<String, Object> memoryReport = Collections.emptyMap();
+
+    /**
+     * 全量构建并发布新版本，返回调用方持有的新版本租约（用完需关闭）
+     */
+    public AddressTreeSnapshot.Lease buildAddressTree(List<TableA> addresses) {
         log.info("开始构建地址树，共{}条地址", addresses.size());
 
-        for (TableA address : addresses) {
-            insertAddressIntoTree(address);
+        writeLock.lock();
+        try {
+            AddressTreeNode root = newRoot();
+            for (TableA address : addresses) {
+                insertAddressIntoTree(root, address);
+            }
+
+            calculateNodeDepths(root, 0);
+            calculateNodeWeights(root);
+
+            long mutableBytes = CompactAddressTree.estimateBytes(root);
+            ExactAddressIndex exactIndex = ExactAddressIndex.build(addresses);
+            if (shardStore.isEnabled()) {
+                // 此时没有构建中的其他分片，不被任何版本引用的旧分片文件都可以删除
+                shardStore.deleteUnreferenced(referencedShardFiles());
+                ProvinceShards shards = writeShards(root);
+                CompactAddressTree directory = CompactAddressTree.freeze(newRoot(), exactIndex);
+                memoryReport = buildMemoryReport(mutableBytes, directory, shards);
+                log.info("地址树构建完成，按省分为{}个分片，内存估算: 可变树{}MB, 分片合计{}MB（按需加载）",
+                        shards.getShards().size(), memoryReport.get("mutableTreeMB"), memoryReport.get("shardTotalMB"));
+                return publish(directory, shards);
+            }
+
+            CompactAddressTree tree = CompactAddressTree.freeze(root, exactIndex);
+            memoryReport = buildMemoryReport(mutableBytes, tree, null);
+
+            log.info("地址树构建完成，{}个节点，内存估算: 可变树{}MB, 紧凑树{}MB",
+                    tree.getNodeCount(), memoryReport.get("mutableTreeMB"), memoryReport.get("compactTreeMB"));
+            return publish(tree, null);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 表A指纹与快照一致时直接从快照加载并发布，返回调用方持有的租约；加载失败返回null
+     */
+    public AddressTreeSnapshot.Lease loadSnapshot(TreeSnapshotStore.Fingerprint fingerprint) {
+        return loadSnapshot(fingerprint, false);
+    }
+
+    /**
+     * onlyIfEmpty 时，加载期间已有其他版本发布（例如启动后立即开始的批量匹配）则放弃加载的快照，返回null
+     */
+    private AddressTreeSnapshot.Lease loadSnapshot(TreeSnapshotStore.Fingerprint fingerprint, boolean onlyIfEmpty) {
+        if (shardStore.isEnabled()) {
+            // 整树快照不含分片目录，分片模式下每次全量构建都重新写分片
+            return null;
+        }
+        CompactAddressTree loaded = snapshotStore.load(fingerprint);
+        if (loaded == null) {
+            return null;
+        }
+        writeLock.lock();
+        try {
+            if (onlyIfEmpty && isBuilt()) {
+                return null;
+            }
+            memoryReport = buildMemoryReport(null, loaded, null);
+            return publish(loaded, null);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 启动完成后加载与表A指纹一致的快照；已有版本（启动期间已开始匹配）、未启用快照或分片模式时跳过。
+     * 失败只记录日志，第一次批量匹配时照常构建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSnapshotOnStartup() {
+        if (!snapshotStore.isEnabled() || shardStore.isEnabled() || isBuilt()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            TreeSnapshotStore.Fingerprint fingerprint = snapshotStore.currentFingerprint();
+            try (AddressTreeSnapshot.Lease lease = loadSnapshot(fingerprint, true)) {
+                if (lease != null) {
+                    log.info("启动时已加载地址树快照，版本号: {}, 耗时{}ms", lease.getVersion(),
+                            System.currentTimeMillis() - start);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("启动时加载地址树快照失败，将在第一次批量匹配时构建", e);
+        }
+    }
+
+    /**
+     * 保存地址树快照；指纹应在加载表A之前取得，
+     * 这样加载期间表A的修改会使快照在下次比对时失效，而不会被误认为已包含
+     */
+    public void saveSnapshot(CompactAddressTree tree, TreeSnapshotStore.Fingerprint fingerprint) {
+        if (shardStore.isEnabled()) {
+            return;
+        }
+        snapshotStore.save(tree, fingerprint);
+    }
+
+    /**
+     * 基于当前版本增量插入地址并发布新版本，返回受影响子树（新叶子节点的父节点）下的表A ID
+     */
+    public Set<Long> insertAddresses(List<TableA> addresses) {
+        PendingInsert pending = prepareInsert(addresses);
+        pending.publish();
+        return pending.getAffectedAddressIds();
+    }
+
+    /**
+     * 基于当前版本增量插入地址，生成尚未发布的新版本：全量树（或分片）不变，新地址插入解冻的增量树后重新冻结。
+     * 返回时持有写锁，调用方必须调用 publish 或 discard 之一
+     */
+    public PendingInsert prepareInsert(List<TableA> addresses) {
+        writeLock.lock();
+        try {
+            CompactAddressTree base;
+            CompactAddressTree delta;
+            ProvinceShards shards;
+            try (AddressTreeSnapshot.Lease current = acquire()) {
+                base = current != null ? current.getTree() : CompactAddressTree.freeze(newRoot(), ExactAddressIndex.EMPTY);
+                delta = current != null ? current.getDelta() : null;
+                shards = current != null ? current.getShards() : null;
+            }
+
+            AddressTreeNode deltaRoot = delta != null ? delta.thaw() : newRoot();
+            Set<List<String>> parents = new LinkedHashSet<>();
+            for (TableA address : addresses) {
+                List<String> parent = insertAddressIntoTree(deltaRoot, address);
+                if (parent != null) {
+                    parents.add(parent);
+                }
+            }
+            ExactAddressIndex deltaIndex = delta != null ? delta.getExactIndex() : ExactAddressIndex.EMPTY;
+            CompactAddressTree newDelta = CompactAddressTree.freeze(deltaRoot, deltaIndex.merge(addresses));
+
+            Set<Long> affected = collectAddressIds(parents, base, newDelta, shards);
+            AddressTreeSnapshot snapshot = newSnapshot(base, newDelta, shards);
+            log.info("增量插入地址{}条，影响子树{}个，增量树共{}条地址，待发布版本{}", addresses.size(), parents.size(),
+                    newDelta.getAddressCount(), snapshot.getVersion());
+            return new PendingInsert(snapshot, affected);
+        } catch (RuntimeException | Error e) {
+            writeLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * 全量树（或所在省的分片）和增量树中各路径对应子树下的表A ID
+     */
+    private Set<Long> collectAddressIds(Collection<List<String>> paths, CompactAddressTree base,
+                                        CompactAddressTree delta, ProvinceShards shards) {
+        Set<Long> ids = new HashSet<>();
+        for (List<String> path : paths) {
+            List<CompactAddressTree> trees = new ArrayList<>();
+            trees.add(delta);
+            if (shards == null) {
+                trees.add(base);
+            } else if (path.isEmpty()) {
+                for (ProvinceShards.Shard shard : shards.getShards()) {
+                    trees.add(shardStore.load(shard));
+                }
+            } else {
+                ProvinceShards.Shard shard = shards.find(path.get(0));
+                if (shard != null) {
+                    trees.add(shardStore.load(shard));
+                }
+            }
+            for (CompactAddressTree tree : trees) {
+                int node = tree.findPath(path);
+                if (node >= 0) {
+                    tree.collectAddressIds(node, ids);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 固定当前版本供匹配使用，尚未构建时返回null；用完需关闭
+     */
+    public AddressTreeSnapshot.Lease acquire() {
+        while (true) {
+            AddressTreeSnapshot snapshot = current.get();
+            if (snapshot == null) {
+                return null;
+            }
+            AddressTreeSnapshot.Lease lease = snapshot.acquire();
+            if (lease != null) {
+                return lease;
+            }
+            // 读到的版本恰好已被替换并释放，重新读取当前版本
         }
+    }
+
+    /**
+     * 发布新版本：原子替换当前版本，旧版本在最后一个读取方结束后释放
+     */
+    private AddressTreeSnapshot.Lease publish(CompactAddressTree tree, ProvinceShards shards) {
+        AddressTreeSnapshot snapshot = newSnapshot(tree, null, shards);
+        AddressTreeSnapshot.Lease lease = snapshot.acquire();
+        publish(snapshot);
+        return lease;
+    }
 
-        calculateNodeDepths(root, 0);
-        calculateNodeWeights(root);
+    private AddressTreeSnapshot newSnapshot(CompactAddressTree tree, CompactAddressTree delta, ProvinceShards shards) {
+        return new AddressTreeSnapshot(versionSequence.incrementAndGet(), tree, delta, shards,
+                this::onSnapshotReleased);
+    }
+
+    private void publish(AddressTreeSnapshot snapshot) {
+        AddressTreeSnapshot previous = current.getAndSet(snapshot);
+        if (previous != null) {
+            retired.add(previous);
+            previous.retire();
+        }
+        log.info("地址树版本{}已发布，上一版本: {}", snapshot.getVersion(),
+                previous == null ? null : previous.getVersion());
+    }
 
-        log.info("地址树构建完成");
+    private void onSnapshotReleased(AddressTreeSnapshot snapshot) {
+        retired.remove(snapshot);
+        log.info("地址树版本{}已释放", snapshot.getVersion());
+        if (snapshot.getShards() != null) {
+            // 只删除该版本自己的分片文件中不再被其他版本共用的，构建中尚未发布的分片不受影响
+            Set<Path> released = new HashSet<>();
+            for (ProvinceShards.Shard shard : snapshot.getShards().getShards()) {
+                released.add(shard.getFile());
+            }
+            released.removeAll(referencedShardFiles());
+            shardStore.delete(released);
+        }
     }
 
-    private void insertAddressIntoTree(TableA address) {
+    /**
+     * 当前版本和仍被持有的旧版本引用的分片文件
+     */
+    private Set<Path> referencedShardFiles() {
+        Set<Path> files = new HashSet<>();
+        List<AddressTreeSnapshot> live = new ArrayList<>(retired);
+        live.add(current.get());
+        for (AddressTreeSnapshot snapshot : live) {
+            ProvinceShards shards = snapshot == null ? null : snapshot.getShards();
+            if (shards != null) {
+                for (ProvinceShards.Shard shard : shards.getShards()) {
+                    files.add(shard.getFile());
+                }
+            }
+        }
+        return files;
+    }
+
+    private ProvinceShards writeShards(AddressTreeNode root) {
+        try {
+            return shardStore.writeShards(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入地址树分片失败", e);
+        }
+    }
+
+    private static AddressTreeNode newRoot() {
+        return new AddressTreeNode("中国");
+    }
+
+    /**
+     * 插入一条地址，沿途新建的节点直接设置深度和权重；返回叶子节点的父节点的路径（各级名称），
+     * 地址没有组件时返回null
+     */
+    private List<String> insertAddressIntoTree(AddressTreeNode root, TableA address) {
         List<String> components = addressParser.parseAddressComponents(address.getAddressA());
 
         AddressTreeNode currentNode = root;
+        List<String> path = new ArrayList<>(components.size());
 
         for (int i = 0; i < components.size(); i++) {
             String component = components.get(i);
             if (component.isEmpty()) {
-                component = "未知_" + (i + 1);
+                component = CompactAddressTree.placeholderName(i + 1);
             }
 
+            path.add(component);
             currentNode = currentNode.getOrCreateChild(component);
+            currentNode.setDepth(i + 1);
+            currentNode.setWeight(Math.log(i + 2));
 
             if (i == components.size() - 1) {
                 currentNode.addAddress(address);
                 currentNode.setLeaf(true);
             }
         }
+
+        if (path.isEmpty()) {
+            return null;
+        }
+        path.remove(path.size() - 1);
+        return path;
+    }
+
+    /**
+     * mutableBytes 为null表示从快照加载，没有可变树可供对比
+     */
+    private static Map<String, Object> buildMemoryReport(Long mutableBytes, CompactAddressTree compact,
+                                                         ProvinceShards shards) {
+        long compactBytes = compact.estimateBytes();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("nodeCount", compact.getNodeCount());
+        report.put("addressCount", compact.getAddressCount());
+        report.put("compactTreeBytes", compactBytes);
+        report.put("compactTreeMB", String.format("%.2f", compactBytes / 1048576.0));
+        report.put("exactIndexSize", compact.getExactIndex().size());
+        report.put("exactIndexBytes", compact.getExactIndex().estimateBytes());
+        if (shards != null) {
+            long shardBytes = 0;
+            for (ProvinceShards.Shard shard : shards.getShards()) {
+                shardBytes += shard.getBytes();
+            }
+            report.put("shardCount", shards.getShards().size());
+            report.put("shardTotalBytes", shardBytes);
+            report.put("shardTotalMB", String.format("%.2f", shardBytes / 1048576.0));
+        }
+        if (mutableBytes != null) {
+            report.put("mutableTreeBytes", mutableBytes);
+            report.put("mutableTreeMB", String.format("%.2f", mutableBytes / 1048576.0));
+            report.put("compressionRatio", String.format("%.1f", mutableBytes / (double) Math.max(1, compactBytes)));
+        }
+        return report;
     }
 
     private void calculateNodeDepths(AddressTreeNode node, int currentDepth) {
@@ -66,11 +410,88 @@ public class AddressTreeBuilder {
         }
     }
 
-    public AddressTreeNode getRoot() {
-        return root;
+    public boolean isBuilt() {
+        return current.get() != null;
+    }
+
+    /**
+     * 内存估算报告：可变树（含表A实体）与紧凑树的对比，按64位JVM、压缩指针估算；
+     * 另附当前版本号、读取方数量和仍被持有的旧版本，分片模式下还有已加载分片的占用
+     */
+    public Map<String, Object> getMemoryReport() {
+        Map<String, Object> report = new LinkedHashMap<>(memoryReport);
+        AddressTreeSnapshot snapshot = current.get();
+        report.put("treeVersion", snapshot == null ? null : snapshot.getVersion());
+        report.put("activeReaders", snapshot == null ? 0 : snapshot.getReaders());
+        List<Long> pinned = new ArrayList<>();
+        for (AddressTreeSnapshot old : retired) {
+            pinned.add(old.getVersion());
+        }
+        Collections.sort(pinned);
+        report.put("retiredVersionsInUse", pinned);
+        report.put("deltaAddressCount", snapshot == null || snapshot.getDelta() == null
+                ? 0 : snapshot.getDelta().getAddressCount());
+        if (snapshot != null && snapshot.getShards() != null) {
+            report.putAll(shardStore.getStats());
+        }
+        return report;
     }
 
-    public void clearTree() {
-        root = new AddressTreeNode("中国");
+    /**
+     * 增量插入后尚未发布的版本。getTree 可在发布前用于重匹配；publish 或 discard 只生效一次，
+     * 之后释放写锁，必须在调用 prepareInsert 的线程中调用
+     */
+    public final class PendingInsert {
+        private final AddressTreeSnapshot snapshot;
+        private final AddressTreeSnapshot.Lease lease;
+        private final Set<Long> affectedAddressIds;
+        private boolean done;
+
+        private PendingInsert(AddressTreeSnapshot snapshot, Set<Long> affectedAddressIds) {
+            this.snapshot = snapshot;
+            this.lease = snapshot.acquire();
+            this.affectedAddressIds = affectedAddressIds;
+        }
+
+        public AddressTreeSnapshot.Lease getTree() {
+            return lease;
+        }
+
+        /**
+         * 受影响子树（新叶子节点的父节点）下的表A ID，包括全量树和增量树
+         */
+        public Set<Long> getAffectedAddressIds() {
+            return affectedAddressIds;
+        }
+
+        public void publish() {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                AddressTreeBuilder.this.publish(snapshot);
+            } finally {
+                lease.close();
+                writeLock.unlock();
+            }
+        }
+
+        /**
+         * 丢弃该版本（新地址未能写入数据库），当前版本不变
+         */
+        public void discard() {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                snapshot.retire();
+                lease.close();
+                log.info("地址树版本{}未发布，已丢弃", snapshot.getVersion());
+            } finally {
+                writeLock.unlock();
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,175 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.model.AddressBigramIndex;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.CompactAddressTree;
+import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.util.CommonUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 倒排索引匹配引擎（app.match.engine=inverted）：规范化后的表B地址不解析，直接按字二元组在
+ * AddressBigramIndex 中检索，分数为 TF-IDF 余弦相似度。精确地址索引仍优先使用。
+ *
+ * 索引在某个地址树版本第一次被匹配时构建，只保留最近一个版本；
+ * 新版本发布后第一个请求重建，期间其他匹配线程等待。索引覆盖整棵树（有增量树时先与之合并），
+ * 不支持按省分片的地址树，两者同时开启时启动失败
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.match.engine", havingValue = InvertedIndexMatchEngine.NAME)
+public class InvertedIndexMatchEngine implements MatchEngine {
+
+    public static final String NAME = "inverted";
+
+    @Autowired
+    private MatchMetrics metrics;
+
+    @Value("${app.match.top-k:20}")
+    private int topKLimit;
+
+    // 合并候选时最多读取的倒排表长度之和、补全得分的候选数
+    @Value("${app.match.inverted.seed-postings:2000}")
+    private int seedPostings;
+
+    @Value("${app.match.inverted.rerank-size:64}")
+    private int rerankSize;
+
+    @Value("${app.tree.sharding.enabled:false}")
+    private boolean shardingEnabled;
+
+    // 最近一个地址树版本的索引
+    private volatile VersionedIndex current;
+
+    private final LongAdder exactHits = new LongAdder();
+
+    @PostConstruct
+    public void checkConfig() {
+        if (shardingEnabled) {
+            throw new IllegalStateException("倒排索引引擎不支持分片地址树，请关闭 app.tree.sharding.enabled 或改用 app.match.engine=trie");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<MatchCandidate> matchAddress(String addressB, AddressTreeSnapshot.Lease tree) {
+        long start = System.nanoTime();
+        String key = CommonUtils.cleanAddress(addressB);
+        List<MatchCandidate> candidates = matchExact(key, tree);
+        if (candidates == null) {
+            candidates = search(key, tree);
+        }
+        metrics.recordMatch(System.nanoTime() - start, addressB);
+        return candidates;
+    }
+
+    private List<MatchCandidate> matchExact(String key, AddressTreeSnapshot.Lease tree) {
+        long[] ids = tree.findExact(key);
+        if (ids.length == 0) {
+            return null;
+        }
+        exactHits.increment();
+        metrics.recordExactHit();
+        List<MatchCandidate> candidates = new ArrayList<>(Math.min(ids.length, topKLimit));
+        for (int i = 0; i < ids.length && i < topKLimit; i++) {
+            candidates.add(candidate(ids[i], 1.0));
+        }
+        return candidates;
+    }
+
+    /**
+     * 命中的叶子按相似度从高到低展开为表A地址，同一叶子上的地址分数相同，最多 topKLimit 个
+     */
+    private List<MatchCandidate> search(String key, AddressTreeSnapshot.Lease tree) {
+        AddressBigramIndex index = indexFor(tree);
+        CompactAddressTree compact = index.getTree();
+        List<MatchCandidate> candidates = new ArrayList<>();
+        for (AddressBigramIndex.Hit hit : index.search(key, topKLimit, seedPostings, rerankSize)) {
+            int node = hit.getNode();
+            for (int a = compact.getAddressStart(node); a < compact.getAddressEnd(node); a++) {
+                if (candidates.size() == topKLimit) {
+                    return candidates;
+                }
+                candidates.add(candidate(compact.getAddressId(a), hit.getScore()));
+            }
+        }
+        return candidates;
+    }
+
+    private AddressBigramIndex indexFor(AddressTreeSnapshot.Lease tree) {
+        VersionedIndex index = current;
+        if (index != null && index.version == tree.getVersion()) {
+            return index.index;
+        }
+        synchronized (this) {
+            index = current;
+            if (index == null || index.version != tree.getVersion()) {
+                long start = System.currentTimeMillis();
+                CompactAddressTree compact = tree.getDelta() == null
+                        ? tree.getTree() : CompactAddressTree.merge(tree.getTree(), tree.getDelta());
+                index = new VersionedIndex(tree.getVersion(), AddressBigramIndex.build(compact));
+                current = index;
+                log.info("倒排索引构建完成，地址树版本{}，文档{}个，二元组{}个，内存估算{}MB，耗时{}ms",
+                        tree.getVersion(), index.index.getDocumentCount(), index.index.getTermCount(),
+                        String.format("%.2f", index.index.estimateBytes() / 1048576.0),
+                        System.currentTimeMillis() - start);
+            }
+            return index.index;
+        }
+    }
+
+    private static MatchCandidate candidate(long addressId, double score) {
+        TableA address = new TableA();
+        address.setId(addressId);
+        return new MatchCandidate(address, score);
+    }
+
+    @Override
+    public long getExactHitCount() {
+        return exactHits.sum();
+    }
+
+    @Override
+    public Map<String, Object> getCacheStats() {
+        VersionedIndex index = current;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("engine", NAME);
+        stats.put("exactHitCount", exactHits.sum());
+        stats.put("indexTreeVersion", index == null ? null : index.version);
+        stats.put("indexDocumentCount", index == null ? 0 : index.index.getDocumentCount());
+        stats.put("indexTermCount", index == null ? 0 : index.index.getTermCount());
+        stats.put("indexBytes", index == null ? 0 : index.index.estimateBytes());
+        return stats;
+    }
+
+    /**
+     * 没有结果缓存，释放索引（下次匹配时按当时的地址树版本重建）
+     */
+    @Override
+    public void clearCache() {
+        current = null;
+    }
+
+    private static final class VersionedIndex {
+        private final long version;
+        private final AddressBigramIndex index;
+
+        private VersionedIndex(long version, AddressBigramIndex index) {
+            this.version = version;
+            this.index = index;
+        }
+    }
+}
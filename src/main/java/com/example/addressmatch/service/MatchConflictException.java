@@ -0,0 +1,11 @@
+package com.example.addressmatch.service;
+
+/**
+ * 请求与当前匹配状态冲突：已有匹配任务在运行、没有可回滚的结果版本。接口返回409
+ */
+public class MatchConflictException extends RuntimeException {
+
+    public MatchConflictException(String message) {
+        super(message);
+    }
+}
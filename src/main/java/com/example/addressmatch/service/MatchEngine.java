@@ -0,0 +1,35 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.MatchCandidate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 匹配引擎：在指定地址树版本上为表B地址生成表A候选，按分数从高到低排列，分数在 [0, 1]，
+ * 批量匹配和在线匹配都以不低于0.95为匹配成功。
+ * 由 app.match.engine 选择唯一生效的实现：trie（MultiGranularityMatcher，逐级遍历地址树）、
+ * inverted（InvertedIndexMatchEngine，字二元组倒排索引）
+ */
+public interface MatchEngine {
+
+    /**
+     * 引擎名称，与 app.match.engine 的取值一致
+     */
+    String getName();
+
+    List<MatchCandidate> matchAddress(String addressB, AddressTreeSnapshot.Lease tree);
+
+    /**
+     * 精确地址索引命中的次数（服务启动以来，含在线匹配）
+     */
+    long getExactHitCount();
+
+    /**
+     * 缓存及引擎内部统计
+     */
+    Map<String, Object> getCacheStats();
+
+    void clearCache();
+}
@@ -0,0 +1,190 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.model.MatchJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 匹配任务管理
+ *
+ * 异步任务在 spring.task.execution 线程池中执行，提交后立即返回任务ID。
+ * 表A是唯一的参考地址集，同一时间只允许一个匹配任务（异步或同步）运行，
+ * 已有任务时提交会被拒绝。人工确认表D地址加入表A（及随后的增量重匹配）也占用同一互斥，
+ * 记录为一个任务。最近的任务保留 app.job.history-size 个供查询。
+ */
+@Slf4j
+@Service
+public class MatchJobService {
+
+    @Autowired private AddressMatchService addressMatchService;
+    @Autowired private TaskExecutor taskExecutor;
+
+    @Value("${app.job.history-size:20}")
+    private int historySize;
+
+    private final AtomicLong jobSequence = new AtomicLong();
+    private final AtomicReference<MatchJob> activeJob = new AtomicReference<>();
+    private final Map<Long, MatchJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 提交异步匹配任务，已有任务运行时抛出 MatchConflictException
+     */
+    public MatchJob submit() {
+        MatchJob job = reserve();
+        try {
+            taskExecutor.execute(() -> execute(job));
+        } catch (RuntimeException e) {
+            // 线程池拒绝时释放占用
+            finish(job, MatchJob.FAILED, "提交任务失败: " + e.getMessage());
+            throw e;
+        }
+        log.info("已提交匹配任务{}", job.getId());
+        return job;
+    }
+
+    /**
+     * 在调用线程中执行匹配（同步接口），与异步任务共用互斥；匹配失败或被取消时抛出原异常
+     */
+    public MatchJob runNow() {
+        MatchJob job = reserve();
+        RuntimeException failure = execute(job);
+        if (failure != null) {
+            throw failure;
+        }
+        return job;
+    }
+
+    /**
+     * 表D地址加入表A并增量重匹配（同步接口）。增量重匹配修改当前版本的表C/表D并发布新的地址树版本，
+     * 不能与全量匹配同时进行：已有任务运行时抛出 MatchConflictException，执行期间也拒绝提交新的匹配任务
+     */
+    public int addTableDToTableA(List<Long> tableDIds) {
+        MatchJob job = reserve();
+        job.setStatus(MatchJob.RUNNING);
+        job.setStartedAt(LocalDateTime.now());
+        job.startStage("表D加入表A");
+        try {
+            int added = addressMatchService.addTableDToTableA(tableDIds);
+            job.setResult(Collections.singletonMap("added", added));
+            finish(job, MatchJob.SUCCEEDED, null);
+            return added;
+        } catch (RuntimeException | Error e) {
+            log.error("表D加入表A失败（任务{}）", job.getId(), e);
+            finish(job, MatchJob.FAILED, String.valueOf(rootCause(e).getMessage()));
+            throw e;
+        }
+    }
+
+    public MatchJob getJob(long id) {
+        return jobs.get(id);
+    }
+
+    public List<MatchJob> listJobs() {
+        List<MatchJob> list = new ArrayList<>(jobs.values());
+        list.sort(Comparator.comparingLong(MatchJob::getId).reversed());
+        return list;
+    }
+
+    /**
+     * 请求取消任务；返回null表示任务不存在。已结束的任务原样返回
+     */
+    public MatchJob cancel(long id) {
+        MatchJob job = jobs.get(id);
+        if (job != null && job.isActive()) {
+            job.setCancelRequested(true);
+            log.info("已请求取消匹配任务{}，当前阶段: {}", id, job.getStage());
+        }
+        return job;
+    }
+
+    private MatchJob reserve() {
+        MatchJob job = new MatchJob(jobSequence.incrementAndGet());
+        if (!activeJob.compareAndSet(null, job)) {
+            throw new MatchConflictException("已有匹配任务在运行: " + activeJob.get().getId());
+        }
+        jobs.put(job.getId(), job);
+        trimHistory();
+        return job;
+    }
+
+    /**
+     * 执行任务并记录结果，返回失败时的异常
+     */
+    private RuntimeException execute(MatchJob job) {
+        if (job.isCancelRequested()) {
+            finish(job, MatchJob.CANCELLED, null);
+            return new CancellationException("匹配任务" + job.getId() + "已取消");
+        }
+        job.setStatus(MatchJob.RUNNING);
+        job.setStartedAt(LocalDateTime.now());
+        try {
+            addressMatchService.performSimpleMatch(job);
+            job.setResult(addressMatchService.getSimpleStats());
+            finish(job, MatchJob.SUCCEEDED, null);
+            return null;
+        } catch (RuntimeException e) {
+            if (isCancellation(e)) {
+                log.info("匹配任务{}已取消，阶段: {}, 已处理{}/{}", job.getId(), job.getStage(),
+                        job.getProcessed(), job.getTotal());
+                finish(job, MatchJob.CANCELLED, null);
+            } else {
+                log.error("匹配任务{}失败", job.getId(), e);
+                finish(job, MatchJob.FAILED, String.valueOf(rootCause(e).getMessage()));
+            }
+            return e;
+        }
+    }
+
+    private void finish(MatchJob job, String status, String error) {
+        job.setError(error);
+        job.setFinishedAt(LocalDateTime.now());
+        job.setStatus(status);
+        activeJob.compareAndSet(job, null);
+    }
+
+    private static boolean isCancellation(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root;
+    }
+
+    /**
+     * 只保留最近的已结束任务
+     */
+    private void trimHistory() {
+        if (jobs.size() <= historySize) {
+            return;
+        }
+        List<MatchJob> finished = new ArrayList<>();
+        for (MatchJob job : jobs.values()) {
+            if (!job.isActive()) {
+                finished.add(job);
+            }
+        }
+        finished.sort(Comparator.comparingLong(MatchJob::getId));
+        for (int i = 0; i < finished.size() && jobs.size() > historySize; i++) {
+            jobs.remove(finished.get(i).getId());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.CompactAddressTree;
+import com.example.addressmatch.model.ProvinceShards;
+import com.google.common.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 匹配指标（Micrometer，通过 /manage/prometheus 暴露）
+ *
+ *   address.match.stage       各阶段耗时，tag stage
+ *   address.match.latency     单条 matchAddress 耗时直方图（含缓存命中）
+ *   address.match.slow        超过 app.performance.slow-query-threshold 的匹配次数
+ *   address.match.exact       规范化完整地址精确命中（跳过解析和地址树匹配）的次数
+ *   address.cache.hit.ratio   解析/匹配缓存命中率，tag cache；另有 cache.* 标准缓存指标
+ *   address.tree.*            当前地址树版本的节点数、地址数、最大深度、内存估算、版本号；
+ *                             按省分片时按分片目录合计（不论是否已加载），含增量树
+ *   address.match.rows        写入表C/表D的行数，tag table，用 rate() 得到吞吐量
+ */
+@Slf4j
+@Component
+public class MatchMetrics {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private AddressTreeBuilder treeBuilder;
+
+    @Value("${app.performance.slow-query-threshold:100}")
+    private long slowThresholdMs;
+
+    private Timer matchLatency;
+    private Counter slowMatches;
+    private Counter exactMatches;
+    private Counter tableCRows;
+    private Counter tableDRows;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        matchLatency = Timer.builder("address.match.latency")
+                .description("单条地址匹配耗时")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(registry);
+        slowMatches = Counter.builder("address.match.slow")
+                .description("慢匹配次数")
+                .tag("thresholdMs", String.valueOf(slowThresholdMs))
+                .register(registry);
+        exactMatches = Counter.builder("address.match.exact")
+                .description("精确地址命中次数")
+                .register(registry);
+        tableCRows = Counter.builder("address.match.rows").tag("table", "table_c").register(registry);
+        tableDRows = Counter.builder("address.match.rows").tag("table", "table_d").register(registry);
+
+        treeGauge("address.tree.nodes", "地址树节点数", MatchMetrics::nodeCount);
+        treeGauge("address.tree.addresses", "地址树上的表A地址数", MatchMetrics::addressCount);
+        treeGauge("address.tree.depth", "地址树最大深度", MatchMetrics::maxDepth);
+        treeGauge("address.tree.bytes", "紧凑地址树内存估算", MatchMetrics::bytes);
+        Gauge.builder("address.tree.version", treeBuilder, builder -> {
+            try (AddressTreeSnapshot.Lease tree = builder.acquire()) {
+                return tree == null ? 0 : tree.getVersion();
+            }
+        }).description("当前地址树版本号").register(registry);
+    }
+
+    /**
+     * 记录一次匹配耗时，超过慢匹配阈值时计数并记录日志
+     */
+    public void recordMatch(long nanos, String address) {
+        matchLatency.record(nanos, TimeUnit.NANOSECONDS);
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        if (millis > slowThresholdMs) {
+            slowMatches.increment();
+            log.warn("慢匹配: {}ms, 地址: {}", millis, address);
+        }
+    }
+
+    public void recordExactHit() {
+        exactMatches.increment();
+    }
+
+    public void recordStage(String stage, long millis) {
+        stageTimers.computeIfAbsent(stage, name -> Timer.builder("address.match.stage")
+                .description("匹配各阶段耗时")
+                .tag("stage", name)
+                .register(registry))
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordRows(int tableC, int tableD) {
+        tableCRows.increment(tableC);
+        tableDRows.increment(tableD);
+    }
+
+    /**
+     * 注册缓存指标：标准的 cache.gets/evictions/size 以及命中率
+     */
+    public void monitorCache(String name, Cache<?, ?> cache) {
+        GuavaCacheMetrics.monitor(registry, cache, name);
+        Gauge.builder("address.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("缓存命中率")
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    private void treeGauge(String name, String description, ToDoubleFunction<AddressTreeSnapshot.Lease> value) {
+        Gauge.builder(name, treeBuilder, builder -> {
+            try (AddressTreeSnapshot.Lease tree = builder.acquire()) {
+                return tree == null ? 0 : value.applyAsDouble(tree);
+            }
+        }).description(description).register(registry);
+    }
+
+    /**
+     * 各分片树和增量树都有自己的根节点，合计时只算一次
+     */
+    static double nodeCount(AddressTreeSnapshot.Lease tree) {
+        long nodes = tree.getTree().getNodeCount();
+        if (tree.getShards() != null) {
+            for (ProvinceShards.Shard shard : tree.getShards().getShards()) {
+                nodes += shard.getNodeCount() - 1;
+            }
+        }
+        CompactAddressTree delta = tree.getDelta();
+        return delta == null ? nodes : nodes + delta.getNodeCount() - 1;
+    }
+
+    static double addressCount(AddressTreeSnapshot.Lease tree) {
+        long addresses = tree.getTree().getAddressCount();
+        if (tree.getShards() != null) {
+            for (ProvinceShards.Shard shard : tree.getShards().getShards()) {
+                addresses += shard.getAddressCount();
+            }
+        }
+        CompactAddressTree delta = tree.getDelta();
+        return delta == null ? addresses : addresses + delta.getAddressCount();
+    }
+
+    static double maxDepth(AddressTreeSnapshot.Lease tree) {
+        int depth = tree.getTree().getMaxDepth();
+        if (tree.getShards() != null) {
+            for (ProvinceShards.Shard shard : tree.getShards().getShards()) {
+                depth = Math.max(depth, shard.getMaxDepth());
+            }
+        }
+        CompactAddressTree delta = tree.getDelta();
+        return delta == null ? depth : Math.max(depth, delta.getMaxDepth());
+    }
+
+    static double bytes(AddressTreeSnapshot.Lease tree) {
+        long bytes = tree.getTree().estimateBytes();
+        if (tree.getShards() != null) {
+            for (ProvinceShards.Shard shard : tree.getShards().getShards()) {
+                bytes += shard.getBytes();
+            }
+        }
+        CompactAddressTree delta = tree.getDelta();
+        return delta == null ? bytes : bytes + delta.estimateBytes();
+    }
+}
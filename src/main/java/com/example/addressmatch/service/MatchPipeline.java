@@ -0,0 +1,365 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.entity.MatchCheckpoint;
+import com.example.addressmatch.entity.TableB;
+import com.example.addressmatch.entity.TableC;
+import com.example.addressmatch.entity.TableD;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.DuplicateGroups;
+import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.model.MatchJob;
+import com.example.addressmatch.repository.TableBRepository;
+import com.example.addressmatch.util.CommonUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 流式匹配流水线：加载 -> 匹配 -> 写入 三个阶段并行
+ *
+ * 加载线程按主键游标分页读取表B，每页提交给匹配线程池，
+ * 对应的Future按页顺序放入有界队列；调用线程按顺序取出结果写库。
+ * 在途页数受队列容量限制，页数据占用的内存与表B总量无关。
+ * 每页结果与断点在一个独立事务中提交，失败时只损失未提交的页，续跑时从断点之后的表B ID开始加载。
+ * 开始前先做一遍去重扫描（TableBDeduplicator），规范化后相同的表B地址只匹配一次，
+ * 结果暂存到组内最后一行处理完为止，再分发给组内每一行。组内各行在表B中可能相隔很远，
+ * 同时暂存的结果数不受在途页数限制，最多为重复组数（见 DuplicateGroups.getGroupCount）。
+ */
+@Slf4j
+@Service
+public class MatchPipeline {
+
+    @Autowired private TableBRepository tableBRepo;
+    @Autowired private MatchEngine matcher;
+    @Autowired private ResultWriter resultWriter;
+    @Autowired private MatchRunManager runManager;
+    @Autowired private TableBDeduplicator deduplicator;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    // 匹配工作线程数，0表示使用CPU核数
+    @Value("${app.match.parallelism:0}")
+    private int parallelism;
+
+    // 每页（分块）包含的表B记录数
+    @Value("${app.match.chunk-size:500}")
+    private int chunkSize;
+
+    // 在途页数上限（加载与写入之间的有界队列容量）
+    @Value("${app.match.queue-capacity:8}")
+    private int queueCapacity;
+
+    /**
+     * 执行流水线，从断点之后开始，在调用线程中按页提交结果和断点。
+     * 进度同步到 job；job 请求取消后加载线程停止读取新页，写入线程在当前分块提交后抛出 CancellationException
+     */
+    public PipelineResult run(AddressTreeSnapshot.Lease tree, MatchCheckpoint checkpoint, MatchJob job)
+            throws Exception {
+        long startTime = System.currentTimeMillis();
+        long total = tableBRepo.count();
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        MatchProgress progress = new MatchProgress(total, startTime, job, checkpoint);
+        Long runId = checkpoint.getRunId();
+        PipelineResult result = new PipelineResult();
+
+        log.info("流水线开始: 表B共{}条, 每页{}条, {}个匹配线程, 队列容量{}, 起始表B ID>{}",
+                total, chunkSize, workers, queueCapacity, checkpoint.getLastBId());
+
+        long dedupStart = System.currentTimeMillis();
+        DuplicateGroups groups = deduplicator.scan(checkpoint.getLastBId());
+        result.dedupTime = System.currentTimeMillis() - dedupStart;
+        result.distinctAddresses = groups.getDistinct();
+        result.dedupRatio = groups.getDedupRatio();
+        job.setDedupRatio(groups.getDedupRatio());
+        SharedMatches shared = new SharedMatches(groups);
+
+        ExecutorService loaderPool = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("address-load-%d").setDaemon(true).build());
+        ExecutorService matchPool = Executors.newFixedThreadPool(workers,
+                new ThreadFactoryBuilder().setNameFormat("address-match-%d").setDaemon(true).build());
+        BlockingQueue<Future<ChunkResult>> pending = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        try {
+            long startId = checkpoint.getLastBId();
+            loaderPool.submit(() -> loadPages(tree, runId, startId, job, progress, shared, matchPool, pending, result));
+
+            // 写入阶段：按页顺序消费，保证输出顺序与串行路径一致
+            while (true) {
+                ChunkResult chunkResult = pending.take().get();
+                if (chunkResult == ChunkResult.END) {
+                    break;
+                }
+                commitChunk(chunkResult, checkpoint, progress, result);
+                job.checkCancelled();
+            }
+            job.checkCancelled();
+        } finally {
+            loaderPool.shutdownNow();
+            matchPool.shutdownNow();
+        }
+
+        result.processed = progress.processed.get();
+        result.successMatch = progress.successMatch.get();
+        result.failedMatch = progress.failedMatch.get();
+        result.savedTableC = checkpoint.getTableCCount();
+        result.savedTableD = checkpoint.getTableDCount();
+        result.totalTime = System.currentTimeMillis() - startTime;
+        return result;
+    }
+
+    /**
+     * 加载阶段：主键游标分页，避免OFFSET深翻页
+     */
+    private void loadPages(AddressTreeSnapshot.Lease tree, Long runId, long startId, MatchJob job,
+                           MatchProgress progress, SharedMatches shared, ExecutorService matchPool,
+                           BlockingQueue<Future<ChunkResult>> pending, PipelineResult result) {
+        try {
+            long lastId = startId;
+            while (!job.isCancelRequested()) {
+                long loadStart = System.currentTimeMillis();
+                List<TableB> page = tableBRepo.findByIdGreaterThanOrderByIdAsc(
+                        lastId, PageRequest.of(0, Math.max(1, chunkSize)));
+                result.loadTime.addAndGet(System.currentTimeMillis() - loadStart);
+
+                if (page.isEmpty()) {
+                    pending.put(CompletableFuture.completedFuture(ChunkResult.END));
+                    return;
+                }
+
+                lastId = page.get(page.size() - 1).getId();
+                pending.put(matchPool.submit(() -> matchChunk(page, tree, runId, progress, shared)));
+            }
+            // 已取消：结束写入循环，写入线程随后检查取消标记
+            pending.put(CompletableFuture.completedFuture(ChunkResult.END));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("加载表B失败", e);
+            CompletableFuture<ChunkResult> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            try {
+                // 队列满时等待写入线程取走前面的分块，不能丢弃，否则写入线程一直等不到结束标记
+                pending.put(failed);
+            } catch (InterruptedException interrupted) {
+                // 只有写入线程结束后才会中断加载线程，已无人等待
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 匹配一个分块，结果写入该分块自己的缓冲区
+     */
+    ChunkResult matchChunk(List<TableB> chunk, AddressTreeSnapshot.Lease tree, Long runId,
+                        MatchProgress progress, SharedMatches shared) {
+        ChunkResult chunkResult = new ChunkResult(chunk.size());
+        chunkResult.lastBId = chunk.get(chunk.size() - 1).getId();
+
+        for (TableB tableB : chunk) {
+            Long bId = tableB.getId();
+            String addressB = tableB.getAddressB();
+
+            boolean success = false;
+            try {
+                // 耗时和慢匹配由 matchAddress 记录到 MatchMetrics；同组的重复地址只匹配一次
+                List<MatchCandidate> candidates = shared.match(addressB, () -> matcher.matchAddress(addressB, tree));
+
+                if (candidates != null && !candidates.isEmpty() && candidates.get(0).getScore() >= 0.95) {
+                    // 成功匹配
+                    MatchCandidate best = candidates.get(0);
+                    TableC matched = new TableC();
+                    matched.setAId(best.getTableA().getId());
+                    matched.setAddressB(addressB);
+                    matched.setMatchScore(best.getScore());
+                    matched.setRunId(runId);
+                    chunkResult.tableCResults.add(matched);
+                    progress.successMatch.incrementAndGet();
+                    success = true;
+                } else {
+                    // 低分匹配或无匹配
+                    chunkResult.tableDResults.add(newPendingTableD(bId, addressB, runId));
+                    progress.failedMatch.incrementAndGet();
+                }
+            } catch (Exception e) {
+                log.error("处理失败 BID: {}", bId, e);
+                chunkResult.tableDResults.add(newPendingTableD(bId, addressB, runId));
+                progress.failedMatch.incrementAndGet();
+            }
+
+            progress.processed(success);
+        }
+
+        return chunkResult;
+    }
+
+    /**
+     * 写入阶段：一页结果通过JDBC多行INSERT写入（不经过持久化上下文），与推进后的断点在同一事务中提交
+     */
+    private void commitChunk(ChunkResult chunkResult, MatchCheckpoint checkpoint, MatchProgress progress,
+                             PipelineResult result) {
+        long writeStart = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            int savedC = resultWriter.writeTableC(chunkResult.tableCResults);
+            int savedD = resultWriter.writeTableD(chunkResult.tableDResults);
+
+            checkpoint.setLastBId(chunkResult.lastBId);
+            checkpoint.setProcessed(checkpoint.getProcessed() + chunkResult.tableCResults.size()
+                    + chunkResult.tableDResults.size());
+            checkpoint.setSuccessMatch(checkpoint.getSuccessMatch() + chunkResult.tableCResults.size());
+            checkpoint.setTableCCount(checkpoint.getTableCCount() + savedC);
+            checkpoint.setTableDCount(checkpoint.getTableDCount() + savedD);
+            runManager.saveCheckpoint(checkpoint);
+        });
+        result.writeTime += System.currentTimeMillis() - writeStart;
+    }
+
+    private TableD newPendingTableD(Long bId, String addressB, Long runId) {
+        TableD failed = new TableD();
+        failed.setBId(bId);
+        failed.setAddressB(addressB);
+        failed.setStatus("PENDING");
+        failed.setRunId(runId);
+        return failed;
+    }
+
+    /**
+     * 流水线执行结果
+     */
+    @Getter
+    public static class PipelineResult {
+        private int processed;
+        private int successMatch;
+        private int failedMatch;
+        private long savedTableC;
+        private long savedTableD;
+        private final AtomicLong loadTime = new AtomicLong();
+        private long writeTime;
+        private long totalTime;
+        // 去重扫描耗时、不同规范化地址数、去重率
+        private long dedupTime;
+        private long distinctAddresses;
+        private double dedupRatio;
+    }
+
+    /**
+     * 重复地址组的共享匹配结果：组内第一行匹配，其余行复用，组内最后一行取走后移除。
+     * 条目从组内第一行保留到最后一行，跨越其间的所有分块
+     */
+    static class SharedMatches {
+        private final DuplicateGroups groups;
+        private final ConcurrentMap<Long, SharedMatch> matches = new ConcurrentHashMap<>();
+
+        SharedMatches(DuplicateGroups groups) {
+            this.groups = groups;
+        }
+
+        List<MatchCandidate> match(String addressB, Supplier<List<MatchCandidate>> matcher) {
+            if (groups.isEmpty()) {
+                return matcher.get();
+            }
+            String normalized = CommonUtils.cleanAddress(addressB);
+            long key = DuplicateGroups.key(normalized);
+            int size = normalized.isEmpty() ? 1 : groups.sizeOf(key);
+            if (size < 2) {
+                return matcher.get();
+            }
+            SharedMatch shared = matches.computeIfAbsent(key, k -> new SharedMatch(size));
+            try {
+                return shared.get(matcher);
+            } finally {
+                if (shared.remaining.decrementAndGet() == 0) {
+                    matches.remove(key);
+                }
+            }
+        }
+    }
+
+    private static class SharedMatch {
+        private final AtomicInteger remaining;
+        private List<MatchCandidate> candidates;
+
+        SharedMatch(int size) {
+            this.remaining = new AtomicInteger(size);
+        }
+
+        /**
+         * 同组其他行并发到达时等待第一行匹配完成；匹配失败时不缓存，下一行重新匹配
+         */
+        synchronized List<MatchCandidate> get(Supplier<List<MatchCandidate>> matcher) {
+            if (candidates == null) {
+                candidates = matcher.get();
+            }
+            return candidates;
+        }
+    }
+
+    /**
+     * 单个分块的匹配结果（每个工作线程独占，无需同步）
+     */
+    static class ChunkResult {
+        // 流结束标记
+        private static final ChunkResult END = new ChunkResult(0);
+
+        private final List<TableC> tableCResults;
+        private final List<TableD> tableDResults;
+        // 本页最大的表B ID，提交后作为断点
+        private long lastBId;
+
+        ChunkResult(int expectedSize) {
+            this.tableCResults = new ArrayList<>(expectedSize);
+            this.tableDResults = new ArrayList<>();
+        }
+    }
+
+    /**
+     * 匹配进度（多线程共享的计数器）
+     */
+    static class MatchProgress {
+        private final long total;
+        private final long startTime;
+        private final long logInterval;
+        private final AtomicInteger processed = new AtomicInteger();
+        private final AtomicInteger successMatch = new AtomicInteger();
+        private final AtomicInteger failedMatch = new AtomicInteger();
+        private final MatchJob job;
+
+        MatchProgress(long total, long startTime, MatchJob job, MatchCheckpoint checkpoint) {
+            this.total = total;
+            this.startTime = startTime;
+            this.job = job;
+            // 续跑时从断点的累计计数开始
+            int resumed = checkpoint.getProcessed().intValue();
+            int resumedSuccess = checkpoint.getSuccessMatch().intValue();
+            processed.set(resumed);
+            successMatch.set(resumedSuccess);
+            failedMatch.set(resumed - resumedSuccess);
+            job.resumeFrom(total, resumed, resumedSuccess, startTime);
+            // 每处理一定数量记录一次时间
+            this.logInterval = Math.max(10, total / 10);
+        }
+
+        void processed(boolean success) {
+            int current = processed.incrementAndGet();
+            job.addProcessed(success);
+            // 定期输出进度
+            if (current % logInterval == 0) {
+                long currentTime = Math.max(1, System.currentTimeMillis() - startTime);
+                double speed = current * 1000.0 / currentTime;
+                log.info("匹配进度: {}/{} ({}%), 耗时: {}ms, 速度: {}条/秒",
+                        current, total, total > 0 ? (current * 100L) / total : 100, currentTime,
+                        String.format("%.1f", speed));
+            }
+        }
+    }
+}
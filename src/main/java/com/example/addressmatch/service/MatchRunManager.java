@@ -0,0 +1,288 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.entity.MatchCheckpoint;
+import com.example.addressmatch.entity.MatchRun;
+import com.example.addressmatch.repository.MatchCheckpointRepository;
+import com.example.addressmatch.repository.MatchRunRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 匹配结果版本管理
+ *
+ * 每次匹配把表C/表D结果写入一个新版本（run_id），写完后在一个事务里切换
+ * ACTIVE 指针；读取方只看 ACTIVE 版本，因此不会看到写了一半的结果。
+ * 旧版本保留 app.run.retain-generations 个用于回滚，其余由后台线程分批删除。
+ * 清理和回滚都用带原状态条件的UPDATE改状态：清理先把版本占用为 PURGING 再删除数据，
+ * 回滚只激活仍为 SUPERSEDED 的版本，两者并发时只有一方成功，不会激活数据删了一半的版本。
+ * 版本生成期间按分块提交并记录断点（match_checkpoint），中断后的版本在下次匹配时从断点继续。
+ */
+@Slf4j
+@Service
+public class MatchRunManager {
+
+    public static final String BUILDING = "BUILDING";
+    public static final String ACTIVE = "ACTIVE";
+    public static final String SUPERSEDED = "SUPERSEDED";
+    public static final String ROLLED_BACK = "ROLLED_BACK";
+    public static final String FAILED = "FAILED";
+    public static final String PURGING = "PURGING";
+    public static final String PURGED = "PURGED";
+
+    @Autowired private MatchRunRepository matchRunRepo;
+    @Autowired private MatchCheckpointRepository checkpointRepo;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TaskExecutor taskExecutor;
+
+    // 保留的版本数（含当前ACTIVE版本）
+    @Value("${app.run.retain-generations:2}")
+    private int retainGenerations;
+
+    // 后台清理时每条DELETE删除的行数
+    @Value("${app.run.purge-batch-size:10000}")
+    private int purgeBatchSize;
+
+    private final AtomicBoolean purging = new AtomicBoolean(false);
+
+    /**
+     * 创建新的结果版本及其断点
+     */
+    @Transactional
+    public MatchCheckpoint startRun(TreeSnapshotStore.Fingerprint fingerprint) {
+        MatchRun run = new MatchRun();
+        run.setStatus(BUILDING);
+        run.setStartedAt(LocalDateTime.now());
+        run = matchRunRepo.save(run);
+
+        MatchCheckpoint checkpoint = new MatchCheckpoint();
+        checkpoint.setRunId(run.getId());
+        checkpoint.setACount(fingerprint.getCount());
+        checkpoint.setAMaxId(fingerprint.getMaxId());
+        checkpoint.setAIdSum(fingerprint.getIdSum());
+        checkpoint.setALengthSum(fingerprint.getLengthSum());
+        checkpoint.setAContentSum(fingerprint.getContentSum());
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        return checkpointRepo.save(checkpoint);
+    }
+
+    /**
+     * 查找可续跑的版本：最近一个未完成且表A指纹与断点一致的版本；没有则返回null。
+     * 其余未完成的版本（表A已变化、或升级前遗留的无断点版本）标记为失败，由后台清理
+     */
+    @Transactional
+    public MatchCheckpoint findResumable(TreeSnapshotStore.Fingerprint fingerprint) {
+        MatchCheckpoint resumable = null;
+        for (MatchRun run : matchRunRepo.findByStatusOrderByIdDesc(BUILDING)) {
+            MatchCheckpoint checkpoint = checkpointRepo.findById(run.getId()).orElse(null);
+            if (resumable == null && checkpoint != null && matches(checkpoint, fingerprint)) {
+                resumable = checkpoint;
+            } else {
+                log.info("未完成的结果版本{}无法续跑（{}），标记为失败", run.getId(),
+                        checkpoint == null ? "没有断点" : "表A已变化");
+                markFailed(run.getId());
+            }
+        }
+        return resumable;
+    }
+
+    /**
+     * 保存断点，与分块结果在同一事务中提交
+     */
+    public void saveCheckpoint(MatchCheckpoint checkpoint) {
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepo.save(checkpoint);
+    }
+
+    private static boolean matches(MatchCheckpoint checkpoint, TreeSnapshotStore.Fingerprint fingerprint) {
+        // 升级前的断点没有内容指纹，无法确认表A未被修改，不续跑
+        if (checkpoint.getAContentSum() == null) {
+            return false;
+        }
+        return fingerprint.equals(new TreeSnapshotStore.Fingerprint(checkpoint.getACount(), checkpoint.getAMaxId(),
+                checkpoint.getAIdSum(), checkpoint.getALengthSum(), checkpoint.getAContentSum()));
+    }
+
+    /**
+     * 当前生效的版本ID，尚未生成过版本时返回null（对应升级前的无版本数据）
+     */
+    public Long getActiveRunId() {
+        return matchRunRepo.findFirstByStatusOrderByIdDesc(ACTIVE).map(MatchRun::getId).orElse(null);
+    }
+
+    public List<MatchRun> listRuns() {
+        return matchRunRepo.findAllByOrderByIdDesc();
+    }
+
+    /**
+     * 发布版本：继承上一版本的人工审核结果，然后原子切换ACTIVE指针
+     */
+    @Transactional
+    public void publish(Long runId, long tableCCount, long tableDCount) {
+        MatchRun run = matchRunRepo.findById(runId)
+                .orElseThrow(() -> new IllegalStateException("结果版本不存在: " + runId));
+        Long previousRunId = getActiveRunId();
+        int inherited = carryOverReviewDecisions(previousRunId, run.getId());
+
+        matchRunRepo.updateStatus(ACTIVE, SUPERSEDED);
+        run.setStatus(ACTIVE);
+        run.setFinishedAt(LocalDateTime.now());
+        run.setTableCCount(tableCCount);
+        run.setTableDCount(tableDCount);
+        matchRunRepo.save(run);
+        checkpointRepo.findById(runId).ifPresent(checkpointRepo::delete);
+
+        log.info("结果版本{}已生效, 上一版本: {}, 继承审核结果{}条", run.getId(), previousRunId, inherited);
+        purgeAfterCommit();
+    }
+
+    /**
+     * 回滚到上一个保留的版本；读取之后被后台清理占用（PURGING）的版本跳过，依次尝试更早的版本
+     */
+    @Transactional
+    public MatchRun rollback() {
+        MatchRun current = matchRunRepo.findFirstByStatusOrderByIdDesc(ACTIVE)
+                .orElseThrow(() -> new MatchConflictException("没有生效中的结果版本"));
+        for (MatchRun previous : matchRunRepo.findByStatusOrderByIdDesc(SUPERSEDED)) {
+            if (previous.getId() >= current.getId()) {
+                continue;
+            }
+            // 条件更新与清理的占用互斥：先提交的一方生效，另一方更新0行
+            if (matchRunRepo.updateStatus(previous.getId(), SUPERSEDED, ACTIVE) == 0) {
+                log.info("历史版本{}正在清理，跳过", previous.getId());
+                continue;
+            }
+            current.setStatus(ROLLED_BACK);
+            previous.setStatus(ACTIVE);
+            matchRunRepo.save(current);
+
+            log.info("结果版本已回滚: {} -> {}", current.getId(), previous.getId());
+            purgeAfterCommit();
+            return previous;
+        }
+        throw new MatchConflictException("没有可回滚的历史版本");
+    }
+
+    /**
+     * 标记失败版本（其数据由后台清理）
+     */
+    @Transactional
+    public void markFailed(Long runId) {
+        matchRunRepo.findById(runId).ifPresent(run -> {
+            run.setStatus(FAILED);
+            run.setFinishedAt(LocalDateTime.now());
+            matchRunRepo.save(run);
+        });
+        checkpointRepo.findById(runId).ifPresent(checkpointRepo::delete);
+    }
+
+    /**
+     * 新版本中再次失败的地址沿用上一版本的审核状态；
+     * 本次已匹配成功、不在新表D中的审核记录原样复制到新版本
+     */
+    private int carryOverReviewDecisions(Long previousRunId, Long runId) {
+        String previous = previousRunId == null ? "run_id IS NULL" : "run_id = " + previousRunId;
+        int inherited = 0;
+
+        for (String status : Arrays.asList("ADDED", "REJECTED")) {
+            // 子查询包一层派生表，规避MySQL不能在UPDATE子查询中引用目标表的限制
+            inherited += jdbcTemplate.update(
+                    "UPDATE table_d SET status = ? WHERE run_id = ? AND status = 'PENDING' AND b_id IN ("
+                            + "SELECT b_id FROM (SELECT b_id FROM table_d WHERE " + previous
+                            + " AND status = ?) reviewed)",
+                    status, runId, status);
+        }
+
+        inherited += jdbcTemplate.update(
+                "INSERT INTO table_d (b_id, address_b, status, run_id) "
+                        + "SELECT o.b_id, o.address_b, o.status, ? FROM table_d o WHERE o." + previous
+                        + " AND o.status IN ('ADDED', 'REJECTED') AND NOT EXISTS ("
+                        + "SELECT 1 FROM table_d n WHERE n.run_id = ? AND n.b_id = o.b_id)",
+                runId, runId);
+
+        return inherited;
+    }
+
+    private void purgeAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    taskExecutor.execute(MatchRunManager.this::purgeOldGenerations);
+                }
+            });
+        } else {
+            taskExecutor.execute(this::purgeOldGenerations);
+        }
+    }
+
+    /**
+     * 后台分批删除过期版本的数据，每批一条DELETE语句、自动提交。
+     * 删除前用条件UPDATE把版本占用为 PURGING（自动提交），此时已被回滚重新激活的版本更新0行，跳过；
+     * 上次清理中断留下的 PURGING 版本继续清理
+     */
+    public void purgeOldGenerations() {
+        if (!purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Long> expired = new ArrayList<>();
+            List<MatchRun> superseded = matchRunRepo.findByStatusOrderByIdDesc(SUPERSEDED);
+            for (int i = Math.max(0, retainGenerations - 1); i < superseded.size(); i++) {
+                expired.add(superseded.get(i).getId());
+            }
+            matchRunRepo.findByStatusIn(Arrays.asList(ROLLED_BACK, FAILED, PURGING))
+                    .forEach(run -> expired.add(run.getId()));
+
+            for (Long runId : expired) {
+                int claimed = jdbcTemplate.update("UPDATE match_run SET status = ? WHERE id = ? AND status IN ("
+                        + "'SUPERSEDED', 'ROLLED_BACK', 'FAILED', 'PURGING')", PURGING, runId);
+                if (claimed == 0) {
+                    log.info("结果版本{}状态已变化（已回滚激活），跳过清理", runId);
+                    continue;
+                }
+                long deleted = deleteInBatches("table_c", "run_id = " + runId)
+                        + deleteInBatches("table_d", "run_id = " + runId);
+                jdbcTemplate.update("UPDATE match_run SET status = ? WHERE id = ? AND status = ?",
+                        PURGED, runId, PURGING);
+                log.info("已清理结果版本{}: {}行", runId, deleted);
+            }
+
+            // 升级前没有版本号的历史数据，在首个版本生效后清理
+            if (getActiveRunId() != null) {
+                long legacy = deleteInBatches("table_c", "run_id IS NULL")
+                        + deleteInBatches("table_d", "run_id IS NULL");
+                if (legacy > 0) {
+                    log.info("已清理无版本历史数据: {}行", legacy);
+                }
+            }
+        } catch (Exception e) {
+            log.error("清理历史结果版本失败", e);
+        } finally {
+            purging.set(false);
+        }
+    }
+
+    private long deleteInBatches(String table, String condition) {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM " + table + " WHERE " + condition + " LIMIT ?",
+                    Math.max(1, purgeBatchSize));
+            total += deleted;
+        } while (deleted > 0);
+        return total;
+    }
+}
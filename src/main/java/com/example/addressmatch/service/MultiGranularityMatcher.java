@@ -1,190 +1,602 @@
 package com.example.addressmatch.service;
 
 import com.example.addressmatch.entity.TableA;
-import com.example.addressmatch.model.AddressTreeNode;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.CompactAddressTree;
 import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.model.ProvinceShards;
 import com.example.addressmatch.util.CommonUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 默认匹配引擎（app.match.engine=trie）：按解析出的各级组件逐级遍历地址树；
+ * 地址树按省分片时，只遍历表B的省、市路由到的分片（ProvinceShards.route），结果与遍历整树一致
+ */
 @Slf4j
 @Service
-public class MultiGranularityMatcher {
+@ConditionalOnProperty(name = "app.match.engine", havingValue = MultiGranularityMatcher.NAME, matchIfMissing = true)
+public class MultiGranularityMatcher implements MatchEngine {
+
+    public static final String NAME = "trie";
 
     @Autowired
     private AddressParserService addressParser;
 
+    @Autowired
+    private MatchMetrics metrics;
+
     // ================ 缓存部分 ================
+    // 缓存键为 CommonUtils.cleanAddress 规范化后的地址，空白、括号备注不同的写法共用一条缓存；
+    // 匹配缓存的键再加上地址树版本号，新版本发布后旧结果不会被命中，随容量淘汰
+    @Value("${app.cache.max-size:10000}")
+    private long defaultMaxSize;
+
+    @Value("${app.cache.parse-max-size:0}")
+    private long parseMaxSize;
+
+    @Value("${app.cache.match-max-size:0}")
+    private long matchMaxSize;
+
+    // 每次匹配保留的候选数（按分数从高到低），在线匹配的 topK 不超过此值
+    @Value("${app.match.top-k:20}")
+    private int topKLimit;
+
+    // 近似匹配兜底：整条路径允许的编辑次数、每次查找的时间上限、每层保留的路径数
+    @Value("${app.match.relaxed.max-edits:2}")
+    private int relaxedMaxEdits;
+
+    @Value("${app.match.relaxed.budget-ms:3}")
+    private long relaxedBudgetMs;
+
+    @Value("${app.match.relaxed.beam-width:256}")
+    private int relaxedBeamWidth;
+
+    // 近似匹配的分数上限，低于批量/在线匹配的成功阈值0.95：近似结果只作为表D的建议，不直接写入表C
+    static final double RELAXED_SCORE_CEILING = 0.9;
+
     // 地址解析结果缓存（避免重复解析）
-    private final Map<String, List<String>> parseCache = new ConcurrentHashMap<>(256);
+    private Cache<String, List<String>> parseCache;
 
     // 匹配结果缓存（避免重复匹配）
-    private final Map<String, List<MatchCandidate>> matchCache = new ConcurrentHashMap<>(256);
+    private Cache<String, List<MatchCandidate>> matchCache;
+
+    // 精确地址索引命中次数
+    private final LongAdder exactHits = new LongAdder();
+
+    // 近似匹配兜底的命中次数和超时放弃次数
+    private final LongAdder relaxedHits = new LongAdder();
+    private final LongAdder relaxedTimeouts = new LongAdder();
+
+    @PostConstruct
+    public void initCaches() {
+        parseCache = newCache(parseMaxSize > 0 ? parseMaxSize : defaultMaxSize);
+        matchCache = newCache(matchMaxSize > 0 ? matchMaxSize : defaultMaxSize);
+        metrics.monitorCache("parseCache", parseCache);
+        metrics.monitorCache("matchCache", matchCache);
+        log.info("匹配器缓存容量: 解析缓存={}, 匹配缓存={}",
+                parseMaxSize > 0 ? parseMaxSize : defaultMaxSize, matchMaxSize > 0 ? matchMaxSize : defaultMaxSize);
+    }
+
+    private static <V> Cache<String, V> newCache(long maxSize) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
 
     /**
      * 清理缓存（每次匹配前调用）
      */
+    @Override
     public void clearCache() {
-        parseCache.clear();
-        matchCache.clear();
+        parseCache.invalidateAll();
+        matchCache.invalidateAll();
         log.debug("已清理匹配器缓存");
     }
 
     /**
-     * 获取缓存统计信息
+     * 获取缓存统计信息：容量、命中、未命中、淘汰、加载耗时
      */
+    @Override
     public Map<String, Object> getCacheStats() {
         Map<String, Object> stats = new HashMap<>();
+        stats.put("engine", NAME);
         stats.put("parseCacheSize", parseCache.size());
         stats.put("matchCacheSize", matchCache.size());
+        stats.put("exactHitCount", exactHits.sum());
+        stats.put("relaxedHitCount", relaxedHits.sum());
+        stats.put("relaxedTimeoutCount", relaxedTimeouts.sum());
+        putCacheStats(stats, "parseCache", parseCache.stats());
+        putCacheStats(stats, "matchCache", matchCache.stats());
         return stats;
     }
+
+    private static void putCacheStats(Map<String, Object> stats, String prefix, CacheStats cacheStats) {
+        stats.put(prefix + "HitCount", cacheStats.hitCount());
+        stats.put(prefix + "MissCount", cacheStats.missCount());
+        stats.put(prefix + "HitRate", cacheStats.hitRate());
+        stats.put(prefix + "EvictionCount", cacheStats.evictionCount());
+        stats.put(prefix + "LoadCount", cacheStats.loadCount());
+        stats.put(prefix + "TotalLoadTimeMs", cacheStats.totalLoadTime() / 1_000_000);
+        stats.put(prefix + "AverageLoadPenaltyMs", cacheStats.averageLoadPenalty() / 1_000_000.0);
+    }
     // ================ 缓存部分结束 ================
 
-    public List<MatchCandidate> matchAddress(String addressB, AddressTreeNode root) {
-        // 1. 先检查匹配结果缓存
-        List<MatchCandidate> cachedResult = matchCache.get(addressB);
-        if (cachedResult != null) {
-            return cachedResult; // 直接返回缓存结果
+    @Override
+    public List<MatchCandidate> matchAddress(String addressB, AddressTreeSnapshot.Lease tree) {
+        long start = System.nanoTime();
+        String key = CommonUtils.cleanAddress(addressB);
+        // 1. 规范化后与表A地址完全相同时直接命中，不解析、不遍历地址树，也不占用匹配缓存
+        List<MatchCandidate> candidates = matchExact(key, tree);
+        if (candidates == null) {
+            // 2. 检查匹配结果缓存，未命中时计算并放入缓存
+            candidates = getCached(matchCache, tree.getVersion() + "|" + key,
+                    () -> doMatchAddress(key, tree));
+        }
+        metrics.recordMatch(System.nanoTime() - start, addressB);
+        return candidates;
+    }
+
+    @Override
+    public long getExactHitCount() {
+        return exactHits.sum();
+    }
+
+    /**
+     * 精确地址索引命中时返回分数为1.0的候选（按表A ID升序，最多 topKLimit 个），未命中返回null
+     */
+    private List<MatchCandidate> matchExact(String key, AddressTreeSnapshot.Lease tree) {
+        long[] ids = tree.findExact(key);
+        if (ids.length == 0) {
+            return null;
         }
+        exactHits.increment();
+        metrics.recordExactHit();
+        List<MatchCandidate> candidates = new ArrayList<>(Math.min(ids.length, topKLimit));
+        for (int i = 0; i < ids.length && i < topKLimit; i++) {
+            TableA address = new TableA();
+            address.setId(ids[i]);
+            candidates.add(new MatchCandidate(address, 1.0));
+        }
+        return candidates;
+    }
 
+    /**
+     * 逐粒度匹配：第 g 级只从第 g-1 级到达的节点（匹配前沿）向下扩展一层，
+     * 不再每级都从根节点重新遍历；每个前沿节点携带路径上的精确匹配数，用于增量计算分数。
+     * 表B组件先按地址树的名称字典编码，之后的精确比较都是整数比较；前沿用两组数组交替使用，
+     * 每次匹配只分配固定几个数组，不随前沿节点和候选地址数增长。
+     * 逐级遍历没有高置信度结果时（通常是某级名称有错字，前沿在该级中断），再做一次近似匹配兜底；
+     * 近似匹配在编辑次数上限内走完了整条地址，比中断的逐级结果更具体，有结果时即采用。
+     * 两者的分数尺度不同（按组件 / 按字），不互相比较。
+     * 分片模式下前沿从各路由到的分片树的根出发，节点带所属分片树的下标；分片按整树第一级的展开顺序排列
+     * （名称相同的省在前，其余按整树中的顺序），因此前沿顺序、得分和同分时的先后都与遍历整树相同。
+     * 有增量树时排在最后，与全量树（或分片）一起遍历
+     */
+    private List<MatchCandidate> doMatchAddress(String key, AddressTreeSnapshot.Lease lease) {
         // 2. 解析地址（使用缓存）
-        List<String> componentsB = parseAddressWithCache(addressB);
+        List<String> componentsB = parseCleanedWithCache(key);
+        ProvinceShards shards = lease.getShards();
+        List<CompactAddressTree> trees = shards == null
+                ? Collections.singletonList(lease.getTree()) : shards.route(componentsB, relaxedMaxEdits);
+        if (lease.getDelta() != null) {
+            trees = new ArrayList<>(trees);
+            trees.add(lease.getDelta());
+        }
         List<MatchCandidate> finalCandidates = new ArrayList<>();
+        Frontier frontier = new Frontier();
+        Frontier next = new Frontier();
+        for (int t = 0; t < trees.size(); t++) {
+            frontier.add(t, CompactAddressTree.ROOT, 0);
+        }
 
         for (int granularity = 1; granularity <= componentsB.size(); granularity++) {
-            List<MatchCandidate> levelCandidates = matchAtGranularity(componentsB.subList(0, granularity), root);
-
-            if (levelCandidates.isEmpty()) {
-                levelCandidates = relaxMatchConditions(componentsB.subList(0, granularity), root);
-            }
+            expandFrontier(trees, frontier, next, componentsB.get(granularity - 1), granularity);
+            Frontier expanded = next;
+            next = frontier;
+            frontier = expanded;
+            List<MatchCandidate> levelCandidates = scoreFrontier(trees, frontier, granularity);
 
             if (!levelCandidates.isEmpty()) {
-                levelCandidates = rankAndDeduplicate(levelCandidates);
-
                 if (hasHighConfidenceMatch(levelCandidates)) {
-                    // 缓存高置信度匹配结果
-                    List<MatchCandidate> result = levelCandidates.subList(0, Math.min(5, levelCandidates.size()));
-                    matchCache.put(addressB, result);
-                    return result;
+                    // 高置信度匹配结果
+                    return levelCandidates;
                 }
 
                 finalCandidates = levelCandidates;
             }
         }
 
-        // 缓存最终结果
-        matchCache.put(addressB, finalCandidates);
+        List<MatchCandidate> relaxed = relaxMatchConditions(componentsB, trees);
+        if (!relaxed.isEmpty()) {
+            relaxedHits.increment();
+            return relaxed;
+        }
         return finalCandidates;
     }
 
+    private List<String> parseCleanedWithCache(String cleanedAddress) {
+        return getCached(parseCache, cleanedAddress, () -> addressParser.parseCleanedAddress(cleanedAddress));
+    }
+
+    private static <V> V getCached(Cache<String, V> cache, String key, Callable<V> loader) {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("地址匹配失败: " + key, cause);
+        }
+    }
+
     /**
-     * 带缓存的地址解析方法
+     * 前沿向下扩展一层，结果写入 next。按前沿顺序展开，每个节点内精确匹配的子节点在前、模糊匹配的在后，
+     * 与逐级深度优先遍历得到的节点顺序一致；每个子节点只访问一次。
+     * 表B组件在各分片树中的名称编号不同，按分片树分别编码
      */
-    private List<String> parseAddressWithCache(String address) {
-        return parseCache.computeIfAbsent(address, key -> {
-            return addressParser.parseAddressComponents(key);
-        });
-    }
+    private void expandFrontier(List<CompactAddressTree> trees, Frontier frontier, Frontier next,
+                                String targetComponent, int granularity) {
+        next.clear();
+        int[] targetIds = new int[trees.size()];
+        int[] sameAsTargetIds = new int[trees.size()];
+        for (int t = 0; t < trees.size(); t++) {
+            targetIds[t] = trees.get(t).nameId(targetComponent);
+            // 建树时空组件用占位名代替，占位节点对应表A的空组件，与表B的空组件相同
+            sameAsTargetIds[t] = targetComponent.isEmpty()
+                    ? trees.get(t).placeholderNameId(granularity) : targetIds[t];
+        }
 
-    private List<MatchCandidate> matchAtGranularity(List<String> components,
-                                                    AddressTreeNode root) {
-        List<MatchCandidate> candidates = new ArrayList<>();
-        List<AddressTreeNode> matchingNodes = findMatchingPath(components, root);
+        for (int i = 0; i < frontier.size; i++) {
+            int t = frontier.trees[i];
+            CompactAddressTree tree = trees.get(t);
+            int node = frontier.nodes[i];
+            int exactMatches = frontier.exactMatches[i];
+            if (!tree.hasChildren(node)) {
+                continue;
+            }
+
+            int exactMatch = tree.findChild(node, targetIds[t]);
+            if (exactMatch >= 0) {
+                next.add(t, exactMatch, exactMatches + 1);
+            }
 
-        for (AddressTreeNode node : matchingNodes) {
-            for (TableA address : node.getAddresses()) {
-                // 计算匹配分数（表A地址也使用缓存解析）
-                double score = calculateMatchScore(components, address, node);
-                candidates.add(new MatchCandidate(address, score));
+            if (targetComponent.isEmpty()) {
+                // 空组件被所有名称包含，模糊匹配覆盖全部子节点，无需逐个比较
+                for (int child = tree.getFirstChild(node); child < tree.getChildEnd(node); child++) {
+                    if (child != exactMatch) {
+                        next.add(t, child, exactMatches + componentMatch(tree, child, sameAsTargetIds[t]));
+                    }
+                }
+                continue;
+            }
+            for (int child : tree.findFuzzyChildren(node, targetComponent, targetIds[t])) {
+                if (child != exactMatch) {
+                    next.add(t, child, exactMatches + componentMatch(tree, child, sameAsTargetIds[t]));
+                }
             }
         }
+    }
 
-        return candidates;
+    /**
+     * 树节点名称与表B组件是否精确相同（返回0或1），按名称编号比较；
+     * 表B组件为空时 sameAsTargetId 为该级占位名的编号（解析出的各级非空组件都以后缀结尾，不会与占位名冲突）
+     */
+    private static int componentMatch(CompactAddressTree tree, int child, int sameAsTargetId) {
+        return sameAsTargetId >= 0 && tree.getNameId(child) == sameAsTargetId ? 1 : 0;
     }
 
-    private List<AddressTreeNode> findMatchingPath(List<String> components,
-                                                   AddressTreeNode root) {
-        List<AddressTreeNode> allMatches = new ArrayList<>();
-        findPathRecursive(components, 0, root, allMatches);
-        return allMatches;
+    /**
+     * 为前沿中带地址的叶子节点打分，只保留前K名（按分数从高到低）。
+     * 第 g 层叶子上的表A地址恰好有 g 个组件，且与路径上的节点名称一一对应，
+     * 因此精确匹配数就是路径上累计的匹配数，无需重新解析表A地址逐级比较。
+     * 同一叶子上的地址分数相同，前K名已满且该分数不高于第K名时整个叶子跳过。
+     * （原逐级比较中模糊匹配的 0.8 分会被 int 截断，实际不计分，这里保持一致）
+     */
+    private List<MatchCandidate> scoreFrontier(List<CompactAddressTree> trees, Frontier frontier, int granularity) {
+        TopKCandidates topK = new TopKCandidates(topKLimit);
+
+        for (int i = 0; i < frontier.size; i++) {
+            CompactAddressTree tree = trees.get(frontier.trees[i]);
+            int node = frontier.nodes[i];
+            if (!tree.isLeaf(node) || !tree.hasAddresses(node)) {
+                continue;
+            }
+
+            double baseScore = (double) frontier.exactMatches[i] / granularity;
+            double score = Math.min(1.0, baseScore * 0.9 + calculateDepthScore(tree.getDepth(node)) * 0.1);
+            if (!topK.admits(score)) {
+                continue;
+            }
+            for (int a = tree.getAddressStart(node); a < tree.getAddressEnd(node); a++) {
+                topK.offer(tree.getAddressId(a), score);
+            }
+        }
+
+        return topK.toList();
     }
 
-    private void findPathRecursive(List<String> components, int index,
-                                   AddressTreeNode currentNode,
-                                   List<AddressTreeNode> matches) {
-        if (index >= components.size()) {
-            if (currentNode.isLeaf() && currentNode.hasAddresses()) {
-                matches.add(currentNode);
+    /**
+     * 近似匹配兜底：沿地址树逐级下探，每级取名称与表B组件相同或相近（编辑距离不超过剩余次数、数字相同）的子节点，
+     * 整条路径累计编辑次数不超过 relaxedMaxEdits，到达第 n 层（n 为表B组件数）的带地址叶子即为候选。
+     * 相近的子节点由各节点的字倒排索引筛选（CompactAddressTree.findSimilarChildren），不逐个比较表A地址；
+     * 每层只保留编辑次数最少的 relaxedBeamWidth 条路径，超过 relaxedBudgetMs 直接放弃，
+     * 因此单次查找的耗时与表A规模无关。分数为按字计算的相似度 1 - 编辑次数/表B组件总字数，
+     * 再乘以 RELAXED_SCORE_CEILING，始终低于成功阈值，近似匹配的结果都进入表D人工审核。
+     * 分片模式下各分片树的路径在同一个集束中，与整树的剪枝结果相同
+     */
+    private List<MatchCandidate> relaxMatchConditions(List<String> components,
+                                                      List<CompactAddressTree> trees) {
+        if (relaxedMaxEdits <= 0 || components.isEmpty()) {
+            return new ArrayList<>();
+        }
+        long deadline = System.nanoTime() + relaxedBudgetMs * 1_000_000;
+        int totalLength = 0;
+        for (String component : components) {
+            totalLength += component.length();
+        }
+
+        // 复用前沿结构，exactMatches 存放路径上累计的编辑次数
+        Frontier beam = new Frontier();
+        Frontier next = new Frontier();
+        for (int t = 0; t < trees.size(); t++) {
+            beam.add(t, CompactAddressTree.ROOT, 0);
+        }
+        for (int level = 1; level <= components.size() && beam.size > 0; level++) {
+            if (System.nanoTime() > deadline) {
+                relaxedTimeouts.increment();
+                return new ArrayList<>();
             }
-            return;
+            expandRelaxed(trees, beam, next, components.get(level - 1), level);
+            Frontier expanded = next;
+            next = beam;
+            beam = expanded;
+            pruneBeam(beam, next);
         }
 
-        String targetComponent = components.get(index);
+        TopKCandidates topK = new TopKCandidates(topKLimit);
+        for (int i = 0; i < beam.size; i++) {
+            CompactAddressTree tree = trees.get(beam.trees[i]);
+            int node = beam.nodes[i];
+            if (!tree.isLeaf(node) || !tree.hasAddresses(node)) {
+                continue;
+            }
+            double score = RELAXED_SCORE_CEILING * (1.0 - (double) beam.exactMatches[i] / Math.max(1, totalLength));
+            if (!topK.admits(score)) {
+                continue;
+            }
+            for (int a = tree.getAddressStart(node); a < tree.getAddressEnd(node); a++) {
+                topK.offer(tree.getAddressId(a), score);
+            }
+        }
+        return topK.toList();
+    }
 
-        AddressTreeNode exactMatch = currentNode.getChildren().get(targetComponent);
-        if (exactMatch != null) {
-            findPathRecursive(components, index + 1, exactMatch, matches);
+    /**
+     * 近似匹配向下扩展一层：表B组件为空时只走该级占位节点；否则取名称相同的子节点（不计编辑），
+     * 还有剩余编辑次数时再取相近的子节点，按编辑距离累计
+     */
+    private void expandRelaxed(List<CompactAddressTree> trees, Frontier beam, Frontier next,
+                               String component, int level) {
+        next.clear();
+        int[] targetIds = new int[trees.size()];
+        for (int t = 0; t < trees.size(); t++) {
+            CompactAddressTree tree = trees.get(t);
+            targetIds[t] = component.isEmpty() ? tree.placeholderNameId(level) : tree.nameId(component);
         }
+        for (int i = 0; i < beam.size; i++) {
+            int t = beam.trees[i];
+            CompactAddressTree tree = trees.get(t);
+            int node = beam.nodes[i];
+            int edits = beam.exactMatches[i];
+            if (!tree.hasChildren(node)) {
+                continue;
+            }
 
-        for (Map.Entry<String, AddressTreeNode> entry : currentNode.getChildren().entrySet()) {
-            if (CommonUtils.isFuzzyMatch(targetComponent, entry.getKey())) {
-                findPathRecursive(components, index + 1, entry.getValue(), matches);
+            int same = tree.findChild(node, targetIds[t]);
+            if (same >= 0) {
+                next.add(t, same, edits);
+            }
+            int remaining = relaxedMaxEdits - edits;
+            if (component.isEmpty() || remaining <= 0) {
+                continue;
+            }
+            for (int child : tree.findSimilarChildren(node, component, remaining)) {
+                if (child != same) {
+                    next.add(t, child, edits + CommonUtils.editDistance(component, tree.getName(child), remaining));
+                }
             }
         }
+    }
 
-        if (targetComponent.isEmpty()) {
-            for (AddressTreeNode child : currentNode.getChildren().values()) {
-                findPathRecursive(components, index + 1, child, matches);
+    /**
+     * 路径数超过 relaxedBeamWidth 时按编辑次数从少到多保留，同样次数的保持原顺序；spare 作为临时空间
+     */
+    private void pruneBeam(Frontier beam, Frontier spare) {
+        if (beam.size <= relaxedBeamWidth) {
+            return;
+        }
+        spare.clear();
+        for (int edits = 0; edits <= relaxedMaxEdits && spare.size < relaxedBeamWidth; edits++) {
+            for (int i = 0; i < beam.size && spare.size < relaxedBeamWidth; i++) {
+                if (beam.exactMatches[i] == edits) {
+                    spare.add(beam.trees[i], beam.nodes[i], edits);
+                }
             }
         }
+        beam.clear();
+        for (int i = 0; i < spare.size; i++) {
+            beam.add(spare.trees[i], spare.nodes[i], spare.exactMatches[i]);
+        }
     }
 
-    private List<MatchCandidate> relaxMatchConditions(List<String> components,
-                                                      AddressTreeNode root) {
-        return new ArrayList<>();
+    private double calculateDepthScore(int depth) {
+        return Math.min(1.0, depth / 8.0);
     }
 
-    private double calculateMatchScore(List<String> componentsB,
-                                       TableA addressA,
-                                       AddressTreeNode matchedNode) {
-        // 表A地址也使用缓存解析
-        List<String> componentsA = parseAddressWithCache(addressA.getAddressA());
+    private boolean hasHighConfidenceMatch(List<MatchCandidate> candidates) {
+        return !candidates.isEmpty() && candidates.get(0).getScore() > 0.95;
+    }
 
-        int exactMatches = 0;
-        int totalLevels = Math.max(componentsA.size(), componentsB.size());
+    /**
+     * 固定容量的前K名候选：数组实现的最小堆，堆顶为当前第K名，分数用原始 double，表A只存ID，
+     * 输出时才创建 MatchCandidate。分数相同时先加入的优先保留（与原先的稳定排序一致）；
+     * 按表A ID去重，只在堆内线性查找
+     */
+    static final class TopKCandidates {
+        private final long[] addressIds;
+        private final double[] scores;
+        private final int[] sequences;
+        private int size;
+        private int nextSequence;
+
+        TopKCandidates(int capacity) {
+            addressIds = new long[capacity];
+            scores = new double[capacity];
+            sequences = new int[capacity];
+        }
 
-        for (int i = 0; i < Math.min(componentsA.size(), componentsB.size()); i++) {
-            if (componentsA.get(i).equals(componentsB.get(i))) {
-                exactMatches++;
-            } else if (CommonUtils.isFuzzyMatch(componentsA.get(i), componentsB.get(i))) {
-                exactMatches += 0.8;
+        /**
+         * 该分数的候选能否进入前K名
+         */
+        boolean admits(double score) {
+            return size < addressIds.length || score > scores[0];
+        }
+
+        void offer(long addressId, double score) {
+            if (!admits(score) || contains(addressId)) {
+                return;
+            }
+            int sequence = nextSequence++;
+            if (size < addressIds.length) {
+                set(size, addressId, score, sequence);
+                siftUp(size++);
+            } else {
+                set(0, addressId, score, sequence);
+                siftDown(0);
             }
         }
 
-        double baseScore = (double) exactMatches / totalLevels;
-        double depthScore = calculateDepthScore(matchedNode);
+        /**
+         * 按分数从高到低（同分按加入顺序）输出
+         */
+        List<MatchCandidate> toList() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (x, y) -> lower(x, y) ? 1 : lower(y, x) ? -1 : 0);
+            List<MatchCandidate> list = new ArrayList<>(size);
+            for (int i : order) {
+                TableA address = new TableA();
+                address.setId(addressIds[i]);
+                list.add(new MatchCandidate(address, scores[i]));
+            }
+            return list;
+        }
 
-        return Math.min(1.0, baseScore * 0.9 + depthScore * 0.1);
-    }
+        private boolean contains(long id) {
+            for (int i = 0; i < size; i++) {
+                if (addressIds[i] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
-    private double calculateDepthScore(AddressTreeNode node) {
-        int depth = node.getDepth();
-        return Math.min(1.0, depth / 8.0);
-    }
+        /**
+         * i 是否排在 j 之后：分数更低，或分数相同但加入得更晚
+         */
+        private boolean lower(int i, int j) {
+            return scores[i] < scores[j] || (scores[i] == scores[j] && sequences[i] > sequences[j]);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!lower(i, parent)) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
 
-    private List<MatchCandidate> rankAndDeduplicate(List<MatchCandidate> candidates) {
-        Set<MatchCandidate> uniqueCandidates = new LinkedHashSet<>(candidates);
-        List<MatchCandidate> sorted = new ArrayList<>(uniqueCandidates);
-        sorted.sort(Collections.reverseOrder());
-        return sorted;
+        private void siftDown(int i) {
+            while (true) {
+                int lowest = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (lower(child, lowest)) {
+                        lowest = child;
+                    }
+                }
+                if (lowest == i) {
+                    return;
+                }
+                swap(i, lowest);
+                i = lowest;
+            }
+        }
+
+        private void set(int i, long addressId, double score, int sequence) {
+            addressIds[i] = addressId;
+            scores[i] = score;
+            sequences[i] = sequence;
+        }
+
+        private void swap(int i, int j) {
+            long addressId = addressIds[i];
+            double score = scores[i];
+            int sequence = sequences[i];
+            set(i, addressIds[j], scores[j], sequences[j]);
+            set(j, addressId, score, sequence);
+        }
     }
 
-    private boolean hasHighConfidenceMatch(List<MatchCandidate> candidates) {
-        return !candidates.isEmpty() && candidates.get(0).getScore() > 0.95;
+    /**
+     * 匹配前沿：节点所属的地址树（分片）下标、节点及其路径上的精确匹配数（近似匹配兜底中为编辑次数），
+     * 三个并列数组按需扩容
+     */
+    private static final class Frontier {
+        private int[] trees = new int[16];
+        private int[] nodes = new int[16];
+        private int[] exactMatches = new int[16];
+        private int size;
+
+        private void add(int tree, int node, int exact) {
+            if (size == nodes.length) {
+                trees = Arrays.copyOf(trees, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+                exactMatches = Arrays.copyOf(exactMatches, size * 2);
+            }
+            trees[size] = tree;
+            nodes[size] = node;
+            exactMatches[size++] = exact;
+        }
+
+        private void clear() {
+            size = 0;
+        }
     }
 }
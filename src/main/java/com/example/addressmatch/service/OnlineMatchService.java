@@ -0,0 +1,155 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.model.OnlineBatchMatchResult;
+import com.example.addressmatch.model.OnlineMatchResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 在线匹配：直接使用内存中已发布的地址树版本，不访问数据库
+ *
+ * 每个请求固定一个树版本，批量请求内的所有地址用同一版本匹配。
+ * 延迟预算按请求计算：批量请求在预算用完后不再匹配剩余地址，返回 SKIPPED；
+ * 单条请求无法中途停止，超出预算时只记录日志。
+ * 地址树在服务启动完成时从快照加载（AddressTreeBuilder.loadSnapshotOnStartup，先于就绪状态切换为接收流量），
+ * 没有可用快照时在第一次批量匹配后可用。
+ */
+@Slf4j
+@Service
+public class OnlineMatchService {
+
+    private static final double SUCCESS_THRESHOLD = 0.95;
+
+    @Autowired
+    private AddressTreeBuilder treeBuilder;
+
+    @Autowired
+    private MatchEngine matcher;
+
+    @Value("${app.online.default-top-k:5}")
+    private int defaultTopK;
+
+    @Value("${app.online.max-top-k:20}")
+    private int maxTopK;
+
+    @Value("${app.online.max-batch-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${app.online.latency-budget-ms:50}")
+    private long latencyBudgetMs;
+
+    public OnlineMatchResult matchOne(String address, Integer topK) {
+        if (address == null) {
+            throw new IllegalArgumentException("地址不能为空");
+        }
+        int k = resolveTopK(topK);
+        long start = System.nanoTime();
+
+        try (AddressTreeSnapshot.Lease tree = acquireTree()) {
+            OnlineMatchResult result = match(address, k, tree);
+            result.setElapsedMs(elapsedMs(start));
+            if (result.getElapsedMs() > latencyBudgetMs) {
+                log.warn("在线匹配超出延迟预算: {}ms > {}ms, 地址: {}", result.getElapsedMs(), latencyBudgetMs, address);
+            }
+            return result;
+        }
+    }
+
+    public OnlineBatchMatchResult matchBatch(List<String> addresses, Integer topK) {
+        if (addresses == null || addresses.isEmpty()) {
+            throw new IllegalArgumentException("地址列表不能为空");
+        }
+        if (addresses.size() > maxBatchSize) {
+            throw new IllegalArgumentException("批量匹配最多" + maxBatchSize + "条地址，实际" + addresses.size() + "条");
+        }
+        if (addresses.contains(null)) {
+            throw new IllegalArgumentException("地址列表中不能有空值");
+        }
+        int k = resolveTopK(topK);
+        long start = System.nanoTime();
+        long deadline = start + latencyBudgetMs * 1_000_000L;
+
+        OnlineBatchMatchResult batch = new OnlineBatchMatchResult();
+        try (AddressTreeSnapshot.Lease tree = acquireTree()) {
+            batch.setTreeVersion(tree.getVersion());
+            for (String address : addresses) {
+                OnlineMatchResult result;
+                if (System.nanoTime() - deadline > 0) {
+                    result = new OnlineMatchResult();
+                    result.setAddress(address);
+                    result.setStatus(OnlineMatchResult.STATUS_SKIPPED);
+                    result.setTreeVersion(tree.getVersion());
+                    batch.setSkippedCount(batch.getSkippedCount() + 1);
+                } else {
+                    long itemStart = System.nanoTime();
+                    result = match(address, k, tree);
+                    result.setElapsedMs(elapsedMs(itemStart));
+                    if (result.isMatched()) {
+                        batch.setMatchedCount(batch.getMatchedCount() + 1);
+                    }
+                }
+                batch.getResults().add(result);
+            }
+        }
+
+        batch.setElapsedMs(elapsedMs(start));
+        batch.setOverBudget(batch.getSkippedCount() > 0);
+        if (batch.isOverBudget()) {
+            log.warn("批量在线匹配超出延迟预算{}ms: {}条中{}条未匹配", latencyBudgetMs, addresses.size(),
+                    batch.getSkippedCount());
+        }
+        return batch;
+    }
+
+    private OnlineMatchResult match(String address, int topK, AddressTreeSnapshot.Lease tree) {
+        // matchAddress 返回的是缓存中的列表，只读不改
+        List<MatchCandidate> candidates = matcher.matchAddress(address, tree);
+
+        OnlineMatchResult result = new OnlineMatchResult();
+        result.setAddress(address);
+        result.setStatus(OnlineMatchResult.STATUS_OK);
+        result.setTreeVersion(tree.getVersion());
+        for (int i = 0; i < Math.min(topK, candidates.size()); i++) {
+            MatchCandidate candidate = candidates.get(i);
+            result.getCandidates().add(new OnlineMatchResult.Candidate(candidate.getTableA().getId(),
+                    candidate.getScore()));
+        }
+        result.setMatched(!candidates.isEmpty() && candidates.get(0).getScore() >= SUCCESS_THRESHOLD);
+        return result;
+    }
+
+    /**
+     * 地址树已发布（启动时从快照加载，或服务启动后执行过批量匹配）
+     */
+    public boolean isReady() {
+        return treeBuilder.isBuilt();
+    }
+
+    private AddressTreeSnapshot.Lease acquireTree() {
+        AddressTreeSnapshot.Lease tree = treeBuilder.acquire();
+        if (tree == null) {
+            throw new IllegalStateException("地址树尚未构建（没有与表A一致的快照），请先执行一次批量匹配");
+        }
+        return tree;
+    }
+
+    private int resolveTopK(Integer topK) {
+        if (topK == null) {
+            return defaultTopK;
+        }
+        if (topK < 1 || topK > maxTopK) {
+            throw new IllegalArgumentException("topK 取值范围为1~" + maxTopK);
+        }
+        return topK;
+    }
+
+    private static double elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+}
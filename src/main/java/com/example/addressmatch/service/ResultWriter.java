@@ -0,0 +1,248 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.entity.TableC;
+import com.example.addressmatch.entity.TableD;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 表C/表D结果批量写入器
+ *
+ * 实体使用IDENTITY主键，Hibernate无法做JDBC批处理，saveAll会逐行INSERT。
+ * 这里绕过持久化上下文，直接用JDBC拼多行INSERT（每条语句 app.batch.size 行），
+ * 也可切换为 LOAD DATA LOCAL INFILE（需要连接参数 allowLoadLocalInfile=true）。
+ * 使用与调用方相同的事务连接。
+ */
+@Slf4j
+@Service
+public class ResultWriter {
+
+    private static final String TABLE_C_INSERT = "INSERT INTO table_c (a_id, address_b, match_score, run_id) VALUES ";
+    private static final String TABLE_C_ROW = "(?,?,?,?)";
+    private static final String TABLE_D_INSERT = "INSERT INTO table_d (b_id, address_b, status, run_id) VALUES ";
+    private static final String TABLE_D_ROW = "(?,?,?,?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MatchMetrics metrics;
+
+    // 每条多行INSERT包含的行数
+    @Value("${app.batch.size:1000}")
+    private int batchSize;
+
+    // 写入方式：batch（多行INSERT）或 load-data（LOAD DATA LOCAL INFILE）
+    @Value("${app.writer.mode:batch}")
+    private String mode;
+
+    // 按行数缓存拼好的SQL
+    private final Map<String, String> sqlCache = new ConcurrentHashMap<>();
+
+    // 吞吐统计
+    private final AtomicLong tableCRows = new AtomicLong();
+    private final AtomicLong tableDRows = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+
+    public int writeTableC(List<TableC> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        if (isLoadDataMode()) {
+            loadData("table_c", "(a_id, address_b, match_score, run_id)", rows.size(), out -> {
+                for (TableC row : rows) {
+                    writeField(out, row.getAId());
+                    out.write('\t');
+                    writeField(out, row.getAddressB());
+                    out.write('\t');
+                    writeField(out, row.getMatchScore());
+                    out.write('\t');
+                    writeField(out, row.getRunId());
+                    out.write('\n');
+                }
+            });
+        } else {
+            for (int from = 0; from < rows.size(); from += batchSize()) {
+                List<TableC> batch = rows.subList(from, Math.min(rows.size(), from + batchSize()));
+                jdbcTemplate.update(multiRowSql(TABLE_C_INSERT, TABLE_C_ROW, batch.size()), ps -> {
+                    int index = 1;
+                    for (TableC row : batch) {
+                        setLong(ps, index++, row.getAId());
+                        ps.setString(index++, row.getAddressB());
+                        setDouble(ps, index++, row.getMatchScore());
+                        setLong(ps, index++, row.getRunId());
+                    }
+                });
+            }
+        }
+        writeNanos.addAndGet(System.nanoTime() - start);
+        tableCRows.addAndGet(rows.size());
+        metrics.recordRows(rows.size(), 0);
+        return rows.size();
+    }
+
+    public int writeTableD(List<TableD> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        if (isLoadDataMode()) {
+            loadData("table_d", "(b_id, address_b, status, run_id)", rows.size(), out -> {
+                for (TableD row : rows) {
+                    writeField(out, row.getBId());
+                    out.write('\t');
+                    writeField(out, row.getAddressB());
+                    out.write('\t');
+                    writeField(out, row.getStatus());
+                    out.write('\t');
+                    writeField(out, row.getRunId());
+                    out.write('\n');
+                }
+            });
+        } else {
+            for (int from = 0; from < rows.size(); from += batchSize()) {
+                List<TableD> batch = rows.subList(from, Math.min(rows.size(), from + batchSize()));
+                jdbcTemplate.update(multiRowSql(TABLE_D_INSERT, TABLE_D_ROW, batch.size()), ps -> {
+                    int index = 1;
+                    for (TableD row : batch) {
+                        setLong(ps, index++, row.getBId());
+                        ps.setString(index++, row.getAddressB());
+                        ps.setString(index++, row.getStatus());
+                        setLong(ps, index++, row.getRunId());
+                    }
+                });
+            }
+        }
+        writeNanos.addAndGet(System.nanoTime() - start);
+        tableDRows.addAndGet(rows.size());
+        metrics.recordRows(0, rows.size());
+        return rows.size();
+    }
+
+    /**
+     * 重置吞吐统计（每次匹配开始时调用）
+     */
+    public void resetStats() {
+        tableCRows.set(0);
+        tableDRows.set(0);
+        writeNanos.set(0);
+    }
+
+    /**
+     * 获取写入统计：行数、耗时、每秒行数
+     */
+    public Map<String, Object> getStats() {
+        long rows = tableCRows.get() + tableDRows.get();
+        long millis = writeNanos.get() / 1_000_000;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("mode", mode);
+        stats.put("tableCRows", tableCRows.get());
+        stats.put("tableDRows", tableDRows.get());
+        stats.put("writeTimeMs", millis);
+        stats.put("rowsPerSecond", rows * 1_000_000_000.0 / Math.max(1, writeNanos.get()));
+        return stats;
+    }
+
+    private boolean isLoadDataMode() {
+        return "load-data".equalsIgnoreCase(mode);
+    }
+
+    private int batchSize() {
+        return Math.max(1, batchSize);
+    }
+
+    private String multiRowSql(String insert, String row, int rowCount) {
+        return sqlCache.computeIfAbsent(insert + rowCount, k -> {
+            StringBuilder sql = new StringBuilder(insert.length() + rowCount * (row.length() + 1));
+            sql.append(insert);
+            for (int i = 0; i < rowCount; i++) {
+                if (i > 0) {
+                    sql.append(',');
+                }
+                sql.append(row);
+            }
+            return sql.toString();
+        });
+    }
+
+    private void loadData(String table, String columns, int rowCount, RowsWriter rowsWriter) {
+        File file = null;
+        try {
+            file = File.createTempFile("address-match-" + table + "-", ".tsv");
+            try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                rowsWriter.write(out);
+            }
+            String path = file.getAbsolutePath().replace('\\', '/');
+            jdbcTemplate.execute("LOAD DATA LOCAL INFILE '" + path + "' INTO TABLE " + table
+                    + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'"
+                    + " LINES TERMINATED BY '\\n' " + columns);
+            log.debug("LOAD DATA写入{}: {}条", table, rowCount);
+        } catch (IOException e) {
+            throw new IllegalStateException("生成LOAD DATA临时文件失败", e);
+        } finally {
+            if (file != null && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * 按 LOAD DATA 默认转义规则输出字段，null 输出为 \N
+     */
+    private static void writeField(BufferedWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.write("\\N");
+            return;
+        }
+        String text = value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\': out.write("\\\\"); break;
+                case '\t': out.write("\\t"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                default: out.write(c);
+            }
+        }
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowsWriter {
+        void write(BufferedWriter out) throws IOException;
+    }
+}
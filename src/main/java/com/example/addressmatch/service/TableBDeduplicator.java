@@ -0,0 +1,270 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.model.DuplicateGroups;
+import com.example.addressmatch.util.CommonUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 匹配前的表B去重扫描：按主键游标读取地址，规范化后取64位指纹，排序后统计相同指纹的行数，
+ * 得到重复分组（DuplicateGroups）。流水线对同组地址只匹配一次，结果分发给组内每一行。
+ *
+ * 内存中最多缓存 memoryRows 个指纹（每个8字节），超过后排序写成一个有序段到 spillDir，
+ * 扫描结束后多路归并各段计数，内存占用与表B总量无关；临时文件在扫描结束后删除。
+ */
+@Slf4j
+@Service
+public class TableBDeduplicator {
+
+    private static final int SCAN_PAGE_SIZE = 10000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.match.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.match.dedup.memory-rows:1000000}")
+    private int memoryRows;
+
+    @Value("${app.match.dedup.spill-dir:data/dedup}")
+    private String spillDir;
+
+    /**
+     * 扫描表B中ID大于 startId 的行（续跑时只统计断点之后的行），未启用时返回空分组
+     */
+    public DuplicateGroups scan(long startId) throws IOException {
+        if (!enabled) {
+            return DuplicateGroups.EMPTY;
+        }
+        long start = System.currentTimeMillis();
+        int capacity = Math.max(1, memoryRows);
+        long[] buffer = new long[Math.min(capacity, SCAN_PAGE_SIZE)];
+        List<Path> runs = new ArrayList<>();
+        try {
+            int size = 0;
+            long[] lastId = {startId};
+            long rows = 0;
+            while (true) {
+                List<String> page = new ArrayList<>(SCAN_PAGE_SIZE);
+                jdbcTemplate.query("SELECT id, address_b FROM table_b WHERE id > ? ORDER BY id LIMIT ?", rs -> {
+                    lastId[0] = rs.getLong(1);
+                    page.add(rs.getString(2));
+                }, lastId[0], SCAN_PAGE_SIZE);
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (String address : page) {
+                    String normalized = CommonUtils.cleanAddress(address);
+                    if (normalized.isEmpty()) {
+                        continue;
+                    }
+                    if (size == buffer.length && size < capacity) {
+                        buffer = Arrays.copyOf(buffer, (int) Math.min(capacity, size * 2L));
+                    } else if (size == buffer.length) {
+                        runs.add(spill(buffer, size));
+                        size = 0;
+                    }
+                    buffer[size++] = DuplicateGroups.key(normalized);
+                    rows++;
+                }
+            }
+
+            Arrays.sort(buffer, 0, size);
+            DuplicateGroups groups = runs.isEmpty()
+                    ? count(new ArrayReader(buffer, size), rows, 0)
+                    : count(merge(runs, new ArrayReader(buffer, size)), rows, runs.size());
+            log.info("表B去重扫描完成: {}行, 不同地址{}个, 重复组{}个, 去重率{}%, 溢写有序段{}个, 耗时{}ms",
+                    groups.getRows(), groups.getDistinct(), groups.getGroupCount(),
+                    String.format("%.1f", groups.getDedupRatio() * 100), runs.size(),
+                    System.currentTimeMillis() - start);
+            return groups;
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * 排序后写成一个有序段
+     */
+    private Path spill(long[] buffer, int size) throws IOException {
+        Arrays.sort(buffer, 0, size);
+        Path dir = Paths.get(spillDir);
+        Files.createDirectories(dir);
+        Path run = Files.createTempFile(dir, "dedup-", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(buffer[i]);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * 有序指纹流中连续相同的为一组，只保留成员数不少于2的组
+     */
+    private static DuplicateGroups count(KeyReader reader, long rows, int spilledRuns) throws IOException {
+        long[] keys = new long[16];
+        int[] sizes = new int[16];
+        int groups = 0;
+        long distinct = 0;
+        try {
+            boolean hasCurrent = reader.hasNext();
+            long current = hasCurrent ? reader.next() : 0;
+            while (hasCurrent) {
+                int size = 1;
+                boolean hasNext;
+                long next = 0;
+                while ((hasNext = reader.hasNext()) && (next = reader.next()) == current) {
+                    size++;
+                }
+                distinct++;
+                if (size > 1) {
+                    if (groups == keys.length) {
+                        keys = Arrays.copyOf(keys, groups * 2);
+                        sizes = Arrays.copyOf(sizes, groups * 2);
+                    }
+                    keys[groups] = current;
+                    sizes[groups++] = size;
+                }
+                hasCurrent = hasNext;
+                current = next;
+            }
+        } finally {
+            reader.close();
+        }
+        return new DuplicateGroups(Arrays.copyOf(keys, groups), Arrays.copyOf(sizes, groups),
+                rows, distinct, spilledRuns);
+    }
+
+    /**
+     * 多路归并：各有序段和内存中剩余的有序指纹
+     */
+    private static KeyReader merge(List<Path> runs, KeyReader memory) throws IOException {
+        List<KeyReader> readers = new ArrayList<>(runs.size() + 1);
+        try {
+            for (Path run : runs) {
+                readers.add(new RunReader(run));
+            }
+        } catch (IOException e) {
+            for (KeyReader reader : readers) {
+                reader.close();
+            }
+            throw e;
+        }
+        readers.add(memory);
+        return new MergeReader(readers);
+    }
+
+    // ================ 有序指纹流 ================
+
+    private interface KeyReader extends Closeable {
+        boolean hasNext() throws IOException;
+
+        long next() throws IOException;
+    }
+
+    private static final class ArrayReader implements KeyReader {
+        private final long[] keys;
+        private final int size;
+        private int position;
+
+        ArrayReader(long[] keys, int size) {
+            this.keys = keys;
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < size;
+        }
+
+        @Override
+        public long next() {
+            return keys[position++];
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class RunReader implements KeyReader {
+        private final DataInputStream in;
+        private int remaining;
+
+        RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+            this.remaining = in.readInt();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public long next() throws IOException {
+            remaining--;
+            return in.readLong();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class MergeReader implements KeyReader {
+        private final List<KeyReader> readers;
+        // 各路当前的指纹和所属的读取器下标，按指纹排序
+        private final PriorityQueue<long[]> heads = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+
+        MergeReader(List<KeyReader> readers) throws IOException {
+            this.readers = readers;
+            for (int i = 0; i < readers.size(); i++) {
+                advance(i);
+            }
+        }
+
+        private void advance(int reader) throws IOException {
+            if (readers.get(reader).hasNext()) {
+                heads.add(new long[]{readers.get(reader).next(), reader});
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public long next() throws IOException {
+            long[] head = heads.poll();
+            advance((int) head[1]);
+            return head[0];
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (KeyReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.model.AddressTreeNode;
+import com.example.addressmatch.model.CompactAddressTree;
+import com.example.addressmatch.model.ExactAddressIndex;
+import com.example.addressmatch.model.ProvinceShards;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 省分片地址树的文件存储和内存缓存
+ *
+ * 每个分片冻结后写入 dir 下单独的文件（CompactAddressTree.writeTo 格式，不含精确地址索引），
+ * 文件名带生成序号，写入后不再修改：增量插入只为受影响的省写新文件，未受影响的分片文件被新旧版本共用。
+ * 已加载的分片放在按估算字节数加权的 LRU 缓存中，总量超过 memoryBudgetMb 时淘汰最久未用的分片；
+ * 正在匹配的线程仍持有被淘汰分片的引用，用完后才被回收，因此预算是稳态上限而非瞬时上限。
+ */
+@Slf4j
+@Service
+public class TreeShardStore {
+
+    @Value("${app.tree.sharding.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.tree.sharding.dir:data/shards}")
+    private String dir;
+
+    @Value("${app.tree.sharding.memory-budget-mb:512}")
+    private long memoryBudgetMb;
+
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+
+    private volatile Cache<Path, CompactAddressTree> loaded;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 把整树根节点下的每个省拆成一个分片写入文件，返回分片目录
+     */
+    public ProvinceShards writeShards(AddressTreeNode root) throws IOException {
+        List<ProvinceShards.Shard> shards = new ArrayList<>();
+        for (AddressTreeNode province : root.getChildren().values()) {
+            shards.add(writeShard(root.getName(), province));
+        }
+        return new ProvinceShards(shards, this::load);
+    }
+
+    /**
+     * 把一个省的子树冻结为分片树并写入新文件
+     */
+    public ProvinceShards.Shard writeShard(String rootName, AddressTreeNode province) throws IOException {
+        AddressTreeNode shardRoot = new AddressTreeNode(rootName);
+        shardRoot.getChildren().put(province.getName(), province);
+        CompactAddressTree tree = CompactAddressTree.freeze(shardRoot, ExactAddressIndex.EMPTY);
+
+        Path directory = Paths.get(dir);
+        Files.createDirectories(directory);
+        Path file = directory.resolve("shard-" + generation.incrementAndGet() + ".bin");
+        Path temp = directory.resolve(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            tree.writeTo(out);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        List<String> cities = new ArrayList<>(province.getChildren().keySet());
+        return new ProvinceShards.Shard(province.getName(), file, tree.estimateBytes(), tree.getNodeCount(),
+                tree.getMaxDepth(), tree.getAddressCount(), cities, province.isLeaf() && province.hasAddresses());
+    }
+
+    /**
+     * 加载分片树（已在缓存中则直接返回）
+     */
+    public CompactAddressTree load(ProvinceShards.Shard shard) {
+        try {
+            return cache().get(shard.getFile(), () -> read(shard));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalStateException("加载地址树分片失败: " + shard.getProvince(), e.getCause());
+        }
+    }
+
+    private CompactAddressTree read(ProvinceShards.Shard shard) throws IOException {
+        long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(shard.getFile(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CompactAddressTree tree = CompactAddressTree.readFrom(buffer);
+            log.debug("加载地址树分片: {}, {}个节点, {}条地址, 耗时{}ms", shard.getProvince(),
+                    tree.getNodeCount(), tree.getAddressCount(), System.currentTimeMillis() - start);
+            return tree;
+        }
+    }
+
+    private Cache<Path, CompactAddressTree> cache() {
+        Cache<Path, CompactAddressTree> cache = loaded;
+        if (cache == null) {
+            synchronized (this) {
+                if (loaded == null) {
+                    // 按KB计权，单个分片权重不超过 int 上限
+                    loaded = CacheBuilder.newBuilder()
+                            .maximumWeight(Math.max(1, memoryBudgetMb) * 1024)
+                            .weigher((Path file, CompactAddressTree tree) ->
+                                    (int) Math.min(Integer.MAX_VALUE, Math.max(1, tree.estimateBytes() / 1024)))
+                            .concurrencyLevel(1)
+                            .recordStats()
+                            .removalListener(removal -> log.debug("淘汰地址树分片: {} ({})",
+                                    removal.getKey(), removal.getCause()))
+                            .build();
+                }
+                cache = loaded;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 删除已无版本使用的分片文件
+     */
+    public void delete(Collection<Path> files) {
+        for (Path file : files) {
+            cache().invalidate(file);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("删除地址树分片文件失败: {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * 删除目录下不在 referenced 中的分片文件，只能在没有分片正在写入时调用
+     */
+    public void deleteUnreferenced(Set<Path> referenced) {
+        Path directory = Paths.get(dir);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().startsWith("shard-"))
+                    .filter(file -> !referenced.contains(file))
+                    .forEach(file -> delete(Collections.singleton(file)));
+        } catch (IOException e) {
+            log.warn("清理地址树分片目录失败: {}", directory, e);
+        }
+    }
+
+    /**
+     * 分片缓存统计：已加载分片数、估算字节数、预算、命中和淘汰次数
+     */
+    public Map<String, Object> getStats() {
+        Cache<Path, CompactAddressTree> cache = cache();
+        long bytes = 0;
+        for (CompactAddressTree tree : cache.asMap().values()) {
+            bytes += tree.estimateBytes();
+        }
+        CacheStats stats = cache.stats();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("shardsLoaded", cache.size());
+        report.put("shardsLoadedMB", String.format("%.2f", bytes / 1048576.0));
+        report.put("shardBudgetMB", memoryBudgetMb);
+        report.put("shardHitCount", stats.hitCount());
+        report.put("shardLoadCount", stats.loadCount());
+        report.put("shardEvictionCount", stats.evictionCount());
+        return report;
+    }
+}
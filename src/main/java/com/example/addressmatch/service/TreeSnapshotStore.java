@@ -0,0 +1,146 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.model.CompactAddressTree;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * 地址树二进制快照
+ *
+ * 文件格式（大端）：
+ *   头部      magic, 格式版本, 表A指纹(行数, 最大ID, ID之和, 地址总长度, 地址CRC32之和)
+ *   地址树    CompactAddressTree 的名称字典和各个数组、精确地址索引（见 CompactAddressTree.writeTo）
+ * 先写临时文件再原子替换；加载时内存映射整个文件，数组整段读出。
+ * 解析规则变化会改变树结构，需同时提升 FORMAT_VERSION 使旧快照失效。
+ */
+@Slf4j
+@Service
+public class TreeSnapshotStore {
+
+    private static final int MAGIC = 0x41545331; // "ATS1"
+    private static final int FORMAT_VERSION = 4;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.tree.snapshot-enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.tree.snapshot-path:data/address-tree.snap}")
+    private String path;
+
+    /**
+     * 表A版本指纹：新增、删除行以及修改地址（包括长度不变的修改，由各行地址的CRC32之和反映）都会改变指纹
+     */
+    @Data
+    public static class Fingerprint {
+        private final long count;
+        private final long maxId;
+        private final long idSum;
+        private final long lengthSum;
+        private final long contentSum;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Fingerprint currentFingerprint() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*), COALESCE(MAX(id), 0), COALESCE(SUM(id), 0), "
+                        + "COALESCE(SUM(CHAR_LENGTH(address_a)), 0), COALESCE(SUM(CRC32(address_a)), 0) FROM table_a",
+                (rs, rowNum) -> new Fingerprint(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4),
+                        rs.getLong(5)));
+    }
+
+    /**
+     * 保存快照，失败只记录日志（下次匹配会重新构建）
+     */
+    public void save(CompactAddressTree tree, Fingerprint fingerprint) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Path target = Paths.get(path);
+        Path temp = null;
+        try {
+            Path dir = target.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(fingerprint.getCount());
+                out.writeLong(fingerprint.getMaxId());
+                out.writeLong(fingerprint.getIdSum());
+                out.writeLong(fingerprint.getLengthSum());
+                out.writeLong(fingerprint.getContentSum());
+                tree.writeTo(out);
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("地址树快照已保存: {}, {}个节点, {}字节, 耗时{}ms", target, tree.getNodeCount(),
+                    Files.size(target), System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            log.warn("保存地址树快照失败: {}", target, e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // 临时文件删除失败不影响匹配
+                }
+            }
+        }
+    }
+
+    /**
+     * 加载指纹一致的快照；快照不存在、指纹不一致或文件损坏时返回null
+     */
+    public CompactAddressTree load(Fingerprint fingerprint) {
+        if (!enabled) {
+            return null;
+        }
+        Path target = Paths.get(path);
+        if (!Files.isRegularFile(target)) {
+            log.info("地址树快照不存在: {}", target);
+            return null;
+        }
+
+        long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.info("地址树快照格式不匹配，需要重建: {}", target);
+                return null;
+            }
+            Fingerprint saved = new Fingerprint(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                    buffer.getLong());
+            if (!saved.equals(fingerprint)) {
+                log.info("表A已变化，地址树快照失效: 快照{}, 当前{}", saved, fingerprint);
+                return null;
+            }
+
+            CompactAddressTree tree = CompactAddressTree.readFrom(buffer);
+            log.info("已加载地址树快照: {}, {}个节点, 耗时{}ms", target, tree.getNodeCount(),
+                    System.currentTimeMillis() - start);
+            return tree;
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException e) {
+            log.warn("读取地址树快照失败，需要重建: {}", target, e);
+            return null;
+        }
+    }
+}
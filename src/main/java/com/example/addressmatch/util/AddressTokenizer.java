@@ -0,0 +1,139 @@
+package com.example.addressmatch.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单遍地址分词器，与 CommonUtils.ADDRESS_PATTERNS 逐条正则匹配的结果完全一致
+ *
+ * 前六级对应 "(.*?(后缀))"：从当前位置向后找第一个出现的后缀（同一位置按正则中的顺序尝试），
+ * 由于 "." 不匹配行终止符，组件从最后一个行终止符之后开始。
+ * 后三级对应 "(\d+后缀)"：找第一个后面紧跟后缀的连续ASCII数字串。
+ * 全程只移动下标，每个组件只做一次 substring。
+ */
+public final class AddressTokenizer {
+
+    // 与 ADDRESS_PATTERNS 前六条的后缀及顺序一致
+    private static final String[][] SUFFIX_LEVELS = {
+            {"省", "自治区", "直辖市"},
+            {"市", "自治州", "地区", "盟"},
+            {"区", "县", "县级市", "自治县"},
+            {"街道", "镇", "乡"},
+            {"社区", "村", "居委会"},
+            {"路", "街", "大道", "胡同", "巷", "小区", "家园"}
+    };
+
+    // 与 ADDRESS_PATTERNS 后三条的数字后缀及顺序一致
+    private static final String[][] NUMBER_LEVELS = {
+            {"号", "栋", "幢", "座"},
+            {"单元", "门"},
+            {"室", "号", "户"}
+    };
+
+    private static final String MUNICIPAL_DISTRICT = "市辖区";
+
+    private AddressTokenizer() {
+    }
+
+    /**
+     * 切分已经过 CommonUtils.cleanAddress 的地址
+     */
+    public static List<String> tokenize(String cleaned) {
+        List<String> components = new ArrayList<>(SUFFIX_LEVELS.length + NUMBER_LEVELS.length + 1);
+        if (cleaned.isEmpty()) {
+            return components;
+        }
+
+        // 剩余部分为 cleaned[from, to)，第一次匹配成功后才做 trim
+        int from = 0;
+        int to = cleaned.length();
+
+        for (int level = 0; level < SUFFIX_LEVELS.length + NUMBER_LEVELS.length; level++) {
+            long match = level < SUFFIX_LEVELS.length
+                    ? findSuffix(cleaned, from, to, SUFFIX_LEVELS[level])
+                    : findNumber(cleaned, from, to, NUMBER_LEVELS[level - SUFFIX_LEVELS.length],
+                            level == SUFFIX_LEVELS.length);
+
+            if (match < 0) {
+                components.add("");
+                continue;
+            }
+
+            int start = (int) (match >>> 32);
+            int end = (int) match;
+            components.add(cleaned.substring(start, end));
+
+            // remaining = remaining.substring(end).trim()
+            from = end;
+            while (to > from && cleaned.charAt(to - 1) <= ' ') {
+                to--;
+            }
+            while (from < to && cleaned.charAt(from) <= ' ') {
+                from++;
+            }
+            if (cleaned.startsWith(MUNICIPAL_DISTRICT, from) && from + MUNICIPAL_DISTRICT.length() <= to) {
+                from += MUNICIPAL_DISTRICT.length();
+            }
+        }
+
+        if (from < to) {
+            components.add(cleaned.substring(from, to));
+        }
+        return components;
+    }
+
+    /**
+     * 等价于 "(.*?(a|b|c))" 的 find()，返回 (start << 32 | end)，未找到返回 -1
+     */
+    private static long findSuffix(String text, int from, int to, String[] suffixes) {
+        int start = from;
+        for (int k = from; k < to; k++) {
+            char c = text.charAt(k);
+            for (String suffix : suffixes) {
+                if (c == suffix.charAt(0) && k + suffix.length() <= to && text.startsWith(suffix, k)) {
+                    return ((long) start << 32) | (k + suffix.length());
+                }
+            }
+            if (isLineTerminator(c)) {
+                start = k + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 等价于 "(\d+a|\d+b|...)" 的 find()；optionalLou 对应 "\d+号楼?" 中可选的"楼"
+     */
+    private static long findNumber(String text, int from, int to, String[] suffixes, boolean optionalLou) {
+        int k = from;
+        while (k < to) {
+            if (!isAsciiDigit(text.charAt(k))) {
+                k++;
+                continue;
+            }
+            int runStart = k;
+            while (k < to && isAsciiDigit(text.charAt(k))) {
+                k++;
+            }
+            for (String suffix : suffixes) {
+                if (k + suffix.length() <= to && text.startsWith(suffix, k)) {
+                    int end = k + suffix.length();
+                    if (optionalLou && suffix.equals("号") && end < to && text.charAt(end) == '楼') {
+                        end++;
+                    }
+                    return ((long) runStart << 32) | end;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // 正则 "." 不匹配的行终止符
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
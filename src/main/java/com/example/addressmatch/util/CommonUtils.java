@@ -17,12 +17,61 @@ public class CommonUtils {
             Pattern.compile("(\\d+室|\\d+号|\\d+户)")
     };
 
+    /**
+     * 规范化地址，单遍扫描，结果等价于依次执行：
+     * trim()、replaceAll("\\s+", "")、replaceAll("[(（][^)）]*[)）]", "")、replaceAll("[，。；：]", "")
+     */
     public static String cleanAddress(String address) {
         if (address == null) return "";
-        return address.trim()
-                .replaceAll("\\s+", "")
-                .replaceAll("[(（][^)）]*[)）]", "")
-                .replaceAll("[，。；：]", "");
+
+        int begin = 0;
+        int end = address.length();
+        while (begin < end && address.charAt(begin) <= ' ') begin++;
+        while (end > begin && address.charAt(end - 1) <= ' ') end--;
+
+        // 找到第一个需要删除的字符，没有则不分配新字符串
+        int first = begin;
+        while (first < end && !isRemovable(address.charAt(first))) first++;
+        if (first == end) {
+            return begin == 0 && end == address.length() ? address : address.substring(begin, end);
+        }
+
+        // 最后一个右括号的位置，左括号在它之后则不可能闭合
+        int lastClose = -1;
+        for (int i = end - 1; i >= first; i--) {
+            char c = address.charAt(i);
+            if (c == ')' || c == '）') {
+                lastClose = i;
+                break;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(end - begin);
+        sb.append(address, begin, first);
+        for (int i = first; i < end; i++) {
+            char c = address.charAt(i);
+            if (isWhitespace(c) || c == '，' || c == '。' || c == '；' || c == '：') {
+                continue;
+            }
+            if ((c == '(' || c == '（') && i < lastClose) {
+                // 跳过到第一个右括号（括号内的空白不影响匹配）
+                int close = i + 1;
+                while (address.charAt(close) != ')' && address.charAt(close) != '）') close++;
+                i = close;
+                continue;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isRemovable(char c) {
+        return isWhitespace(c) || c == '(' || c == '（' || c == '，' || c == '。' || c == '；' || c == '：';
+    }
+
+    // 与正则 \s 相同：[ \t\n\x0B\f\r]
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
     public static boolean isFuzzyMatch(String str1, String str2) {
@@ -30,4 +79,51 @@ public class CommonUtils {
         if (str1.contains(str2) || str2.contains(str1)) return true;
         return false;
     }
+
+    /**
+     * 编辑距离（插入、删除、替换各计1），超过 max 时提前结束并返回 max + 1。
+     * 地址组件都很短，逐行计算，某一行最小值已超过 max 即可结束
+     */
+    public static int editDistance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) return max + 1;
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) previous[j] = j;
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) return max + 1;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[m], max + 1);
+    }
+
+    /**
+     * 近似相同：编辑距离不超过 maxEdits，且数字部分完全相同（门牌、楼号、房号差一位就是另一个地址）
+     */
+    public static boolean isSimilar(String a, String b, int maxEdits) {
+        return sameDigits(a, b) && editDistance(a, b, maxEdits) <= maxEdits;
+    }
+
+    private static boolean sameDigits(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (true) {
+            while (i < a.length() && !Character.isDigit(a.charAt(i))) i++;
+            while (j < b.length() && !Character.isDigit(b.charAt(j))) j++;
+            if (i == a.length() || j == b.length()) {
+                return i == a.length() && j == b.length();
+            }
+            if (a.charAt(i++) != b.charAt(j++)) return false;
+        }
+    }
 }
\ No newline at end of file
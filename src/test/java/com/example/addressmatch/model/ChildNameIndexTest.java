@@ -0,0 +1,69 @@
+package com.example.addressmatch.model;
+
+import com.example.addressmatch.util.CommonUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * 子节点名称索引与线性扫描的差分测试：包含关系和编辑距离两种查询
+ */
+class ChildNameIndexTest {
+
+    // 小字表使名称之间大量共享字，覆盖长倒排表、重复字和带数字的名称
+    private static final String CHARS = "东西南北中山河湖路街村镇区县市1２3";
+
+    @Test
+    void indexMatchesLinearScanOnRandomNames() {
+        Random random = new Random(20261018L);
+        for (int round = 0; round < 50; round++) {
+            Set<String> distinct = new LinkedHashSet<>();
+            int size = 8 + random.nextInt(200);
+            while (distinct.size() < size) {
+                distinct.add(randomName(random, 1 + random.nextInt(6)));
+            }
+            String[] names = distinct.toArray(new String[0]);
+            ChildNameIndex index = new ChildNameIndex(names);
+
+            for (int query = 0; query < 200; query++) {
+                String target = random.nextInt(4) == 0
+                        ? names[random.nextInt(names.length)] : randomName(random, random.nextInt(7));
+                assertArrayEquals(linearFuzzy(names, target), index.findFuzzyMatches(target), target);
+                for (int maxEdits = 0; maxEdits <= 2; maxEdits++) {
+                    assertArrayEquals(linearSimilar(names, target, maxEdits),
+                            index.findSimilarMatches(target, maxEdits), target + "/" + maxEdits);
+                }
+            }
+        }
+    }
+
+    private static String randomName(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return sb.toString();
+    }
+
+    private static int[] linearFuzzy(String[] names, String target) {
+        List<Integer> found = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            if (CommonUtils.isFuzzyMatch(names[i], target)) {
+                found.add(i);
+            }
+        }
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] linearSimilar(String[] names, String target, int maxEdits) {
+        List<Integer> found = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            if (CommonUtils.isSimilar(target, names[i], maxEdits)) {
+                found.add(i);
+            }
+        }
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
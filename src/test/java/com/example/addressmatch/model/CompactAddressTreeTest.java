@@ -0,0 +1,189 @@
+package com.example.addressmatch.model;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.util.CommonUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 紧凑地址树的往返测试：writeTo/readFrom 后数组逐项相同，thaw 后重新冻结结构不变，
+ * 增量树合并后与一次性构建的树结构相同；名称编号、模糊查找索引的开放寻址表与线性扫描结果相同
+ */
+class CompactAddressTreeTest {
+
+    private static final String[] NAMES = {"广东省", "浙江省", "广州市", "杭州市", "天河区", "西湖区",
+            "五山街道", "城关镇", "华南社区", "东村", "科华路", "文三路", "1号", "12号", "3栋", ""};
+
+    @Test
+    void writeToAndReadFromPreserveTree() throws IOException {
+        Random random = new Random(20261018L);
+        List<TableA> addresses = randomAddresses(random, 3000, 1);
+        CompactAddressTree tree = CompactAddressTree.freeze(build(addresses), ExactAddressIndex.build(addresses));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            tree.writeTo(out);
+        }
+        CompactAddressTree read = CompactAddressTree.readFrom(ByteBuffer.wrap(bytes.toByteArray()));
+
+        assertEquals(describeInOrder(tree), describeInOrder(read));
+        for (TableA address : addresses) {
+            String key = address.getAddressA();
+            assertArrayEquals(tree.getExactIndex().find(key), read.getExactIndex().find(key), key);
+        }
+        // 名称字典和按名称排序的子节点表也一并往返
+        for (int node = 0; node < tree.getNodeCount(); node++) {
+            for (int child = tree.getFirstChild(node); child < tree.getChildEnd(node); child++) {
+                assertEquals(child, read.findChild(node, tree.getName(child)));
+            }
+        }
+    }
+
+    @Test
+    void lookupTablesMatchLinearScan() {
+        Random random = new Random(11L);
+        List<TableA> addresses = randomAddresses(random, 3000, 1);
+        CompactAddressTree tree = CompactAddressTree.freeze(build(addresses), ExactAddressIndex.build(addresses));
+
+        assertEquals(-1, tree.nameId("不存在的名称"));
+        int indexed = 0;
+        for (int node = 0; node < tree.getNodeCount(); node++) {
+            assertEquals(tree.getNameId(node), tree.nameId(tree.getName(node)));
+            if (tree.getChildEnd(node) - tree.getFirstChild(node) >= 8) {
+                indexed++;
+            }
+            for (String target : NAMES) {
+                List<Integer> expected = new ArrayList<>();
+                for (int child = tree.getFirstChild(node); child < tree.getChildEnd(node); child++) {
+                    if (CommonUtils.isFuzzyMatch(target, tree.getName(child))) {
+                        expected.add(child);
+                    }
+                }
+                int[] actual = tree.findFuzzyChildren(node, target);
+                assertEquals(expected.toString(), Arrays.toString(actual), () -> target);
+            }
+        }
+        // 覆盖到建有模糊查找索引的节点
+        assertTrue(indexed > 0);
+    }
+
+    @Test
+    void thawAndFreezePreserveTree() {
+        Random random = new Random(7L);
+        List<TableA> addresses = randomAddresses(random, 2000, 1);
+        CompactAddressTree tree = CompactAddressTree.freeze(build(addresses), ExactAddressIndex.build(addresses));
+        CompactAddressTree refrozen = CompactAddressTree.freeze(tree.thaw(), tree.getExactIndex());
+
+        assertEquals(describe(tree), describe(refrozen));
+        assertEquals(tree.getNodeCount(), refrozen.getNodeCount());
+        assertEquals(tree.getAddressCount(), refrozen.getAddressCount());
+        assertEquals(tree.getMaxDepth(), refrozen.getMaxDepth());
+    }
+
+    @Test
+    void mergedDeltaEqualsFullBuild() {
+        Random random = new Random(11L);
+        List<TableA> base = randomAddresses(random, 2000, 1);
+        List<TableA> added = randomAddresses(random, 300, base.size() + 1);
+        List<TableA> all = new ArrayList<>(base);
+        all.addAll(added);
+
+        CompactAddressTree full = CompactAddressTree.freeze(build(all), ExactAddressIndex.build(all));
+        CompactAddressTree merged = CompactAddressTree.merge(
+                CompactAddressTree.freeze(build(base), ExactAddressIndex.build(base)),
+                CompactAddressTree.freeze(build(added), ExactAddressIndex.build(added)));
+
+        assertEquals(describe(full), describe(merged));
+        for (TableA address : all) {
+            String key = address.getAddressA();
+            assertArrayEquals(full.getExactIndex().find(key), merged.getExactIndex().find(key), key);
+        }
+    }
+
+    /**
+     * 组件为随机名称，空组件用该级占位名（与 AddressTreeBuilder 相同）；地址文本取组件拼接，兼作规范化地址
+     */
+    private static List<TableA> randomAddresses(Random random, int count, long firstId) {
+        List<TableA> addresses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int levels = 1 + random.nextInt(6);
+            StringBuilder text = new StringBuilder();
+            for (int level = 0; level < levels; level++) {
+                text.append(NAMES[random.nextInt(NAMES.length)]).append('/');
+            }
+            TableA address = new TableA();
+            address.setId(firstId + i);
+            address.setAddressA(text.toString());
+            addresses.add(address);
+        }
+        return addresses;
+    }
+
+    private static AddressTreeNode build(List<TableA> addresses) {
+        AddressTreeNode root = new AddressTreeNode("ROOT");
+        for (TableA address : addresses) {
+            String[] components = address.getAddressA().split("/", -1);
+            AddressTreeNode node = root;
+            for (int i = 0; i < components.length - 1; i++) {
+                String name = components[i].isEmpty() ? CompactAddressTree.placeholderName(i + 1) : components[i];
+                node = node.getOrCreateChild(name);
+                node.setDepth(i + 1);
+                node.setWeight(Math.log(i + 2));
+                if (i == components.length - 2) {
+                    node.addAddress(address);
+                    node.setLeaf(true);
+                }
+            }
+        }
+        return root;
+    }
+
+    /**
+     * 按节点编号逐个描述（名称、深度、叶子、子节点区间、地址ID）
+     */
+    private static List<String> describeInOrder(CompactAddressTree tree) {
+        List<String> lines = new ArrayList<>(tree.getNodeCount());
+        for (int node = 0; node < tree.getNodeCount(); node++) {
+            StringBuilder line = new StringBuilder()
+                    .append(tree.getName(node)).append('|').append(tree.getDepth(node)).append('|')
+                    .append(tree.isLeaf(node)).append('|')
+                    .append(tree.getFirstChild(node)).append('-').append(tree.getChildEnd(node)).append('|');
+            for (int a = tree.getAddressStart(node); a < tree.getAddressEnd(node); a++) {
+                line.append(tree.getAddressId(a)).append(',');
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * 与子节点顺序无关的描述：各节点的路径、深度、叶子标记和排序后的地址ID，按路径排序
+     */
+    private static List<String> describe(CompactAddressTree tree) {
+        List<String> lines = new ArrayList<>();
+        describe(tree, CompactAddressTree.ROOT, "", lines);
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static void describe(CompactAddressTree tree, int node, String path, List<String> lines) {
+        long[] ids = new long[tree.getAddressEnd(node) - tree.getAddressStart(node)];
+        for (int a = tree.getAddressStart(node); a < tree.getAddressEnd(node); a++) {
+            ids[a - tree.getAddressStart(node)] = tree.getAddressId(a);
+        }
+        Arrays.sort(ids);
+        lines.add(path + "|" + tree.getDepth(node) + "|" + tree.isLeaf(node) + "|" + Arrays.toString(ids));
+        for (int child = tree.getFirstChild(node); child < tree.getChildEnd(node); child++) {
+            describe(tree, child, path + "/" + tree.getName(child), lines);
+        }
+    }
+}
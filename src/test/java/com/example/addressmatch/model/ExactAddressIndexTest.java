@@ -0,0 +1,67 @@
+package com.example.addressmatch.model;
+
+import com.example.addressmatch.entity.TableA;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 精确地址索引的合并：分批合并地址、合并另一个索引，与一次性构建及按地址分组的结果相同
+ */
+class ExactAddressIndexTest {
+
+    @Test
+    void mergesEqualOneShotBuild() {
+        Random random = new Random(20261018L);
+        List<TableA> addresses = new ArrayList<>();
+        Map<String, List<Long>> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            // 地址取值范围小于条数，同一地址对应多个ID；少量空地址不进入索引
+            String text = random.nextInt(100) == 0 ? "" : "地址" + random.nextInt(8000);
+            TableA address = new TableA();
+            address.setId((long) random.nextInt(1_000_000));
+            address.setAddressA(text);
+            addresses.add(address);
+            if (!text.isEmpty()) {
+                expected.computeIfAbsent(text, k -> new ArrayList<>()).add(address.getId());
+            }
+        }
+
+        ExactAddressIndex oneShot = ExactAddressIndex.build(addresses);
+        ExactAddressIndex batched = ExactAddressIndex.EMPTY;
+        ExactAddressIndex merged = ExactAddressIndex.EMPTY;
+        for (int from = 0; from < addresses.size(); from += 3000) {
+            List<TableA> batch = addresses.subList(from, Math.min(addresses.size(), from + 3000));
+            batched = batched.merge(batch);
+            merged = merged.merge(ExactAddressIndex.build(batch));
+        }
+
+        int indexed = 0;
+        for (Map.Entry<String, List<Long>> entry : expected.entrySet()) {
+            long[] ids = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            indexed += ids.length;
+            assertArrayEquals(ids, oneShot.find(entry.getKey()), entry.getKey());
+            assertArrayEquals(ids, batched.find(entry.getKey()), entry.getKey());
+            assertArrayEquals(ids, merged.find(entry.getKey()), entry.getKey());
+        }
+        assertEquals(indexed, oneShot.size());
+        assertEquals(indexed, batched.size());
+        assertEquals(indexed, merged.size());
+        assertArrayEquals(new long[0], merged.find("不存在的地址"));
+        assertArrayEquals(new long[0], merged.find(""));
+    }
+
+    @Test
+    void mergingNothingReturnsSameIndex() {
+        TableA address = new TableA();
+        address.setId(1L);
+        address.setAddressA("地址1");
+        ExactAddressIndex index = ExactAddressIndex.build(Collections.singletonList(address));
+        assertSame(index, index.merge(ExactAddressIndex.EMPTY));
+        assertSame(index, index.merge(Collections.emptyList()));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.util.CommonUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 单遍分词器与原正则实现的差分测试
+ */
+class AddressParserServiceTest {
+
+    private final AddressParserService parser = new AddressParserService();
+
+    // 构造随机地址用的片段，覆盖各级后缀、数字、括号、标点、空白、行终止符和控制字符
+    private static final String[] FRAGMENTS = {
+            "广东", "省", "自治区", "直辖市", "广州", "市", "自治州", "地区", "盟", "天河", "区", "县", "县级市",
+            "自治县", "五山", "街道", "镇", "乡", "华南", "社区", "村", "居委会", "科华", "路", "街", "大道",
+            "胡同", "巷", "小区", "家园", "号", "楼", "栋", "幢", "座", "单元", "门", "室", "户", "市辖区",
+            "1", "12", "305", "０", "(", ")", "（", "）", "，", "。", "；", "：", " ", "\t", "\n", "\r",
+            "\u000B", "\f", "\u0001", "\u001F", "\u0085", "\u2028", "\u2029", "🏠", "a", "-", "#"
+    };
+
+    @Test
+    void tokenizerMatchesRegexParserOnRealisticAddresses() {
+        List<String> addresses = Arrays.asList(
+                "",
+                "   ",
+                "广东省广州市天河区五山街道华南社区科华路1号楼2单元301室",
+                "北京市市辖区朝阳区建国路88号",
+                " 浙江省 杭州市（备注）西湖区，文三路 12栋 3门 4户 ",
+                "内蒙古自治区呼和浩特市新城区海拉尔大街5号",
+                "新疆维吾尔自治区伊犁哈萨克自治州伊宁县墩麻扎镇10号",
+                "上海市浦东新区张江镇(近地铁)碧波路690号3号楼",
+                "广西壮族自治区南宁市青秀区东葛路118号青秀万达广场",
+                "四川省凉山彝族自治州西昌市胜利路(北段)9号1单元502",
+                "江苏省苏州市昆山市县级市玉山镇",
+                "重庆市渝中区解放碑步行街88号楼",
+                "河北省石家庄市长安区中山东路 123号",
+                "湖南省长沙市岳麓区麓山南路932号\u0001 ",
+                "(省市区)",
+                "abc(未闭合",
+                "a)b(c)d(e",
+                "12号楼34单元56室78户"
+        );
+        for (String address : addresses) {
+            assertSameResult(address);
+        }
+    }
+
+    @Test
+    void tokenizerMatchesRegexParserOnRandomAddresses() {
+        Random random = new Random(20261017L);
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int parts = random.nextInt(16);
+            for (int p = 0; p < parts; p++) {
+                sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertSameResult(sb.toString());
+        }
+    }
+
+    private void assertSameResult(String address) {
+        assertEquals(legacyCleanAddress(address), CommonUtils.cleanAddress(address), () -> "clean: " + escape(address));
+        assertEquals(legacyParse(address), parser.parseAddressComponents(address), () -> "parse: " + escape(address));
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            sb.append(c < 0x20 || c > 0x7E ? String.format("\\u%04X", (int) c) : String.valueOf(c));
+        }
+        return sb.toString();
+    }
+
+    // ================ 原正则实现（对照基准） ================
+
+    private static String legacyCleanAddress(String address) {
+        if (address == null) return "";
+        return address.trim()
+                .replaceAll("\\s+", "")
+                .replaceAll("[(（][^)）]*[)）]", "")
+                .replaceAll("[，。；：]", "");
+    }
+
+    private static List<String> legacyParse(String address) {
+        List<String> components = new ArrayList<>();
+        String remaining = legacyCleanAddress(address);
+
+        if (remaining.isEmpty()) {
+            return components;
+        }
+
+        for (Pattern pattern : CommonUtils.ADDRESS_PATTERNS) {
+            Matcher matcher = pattern.matcher(remaining);
+            if (matcher.find()) {
+                String component = matcher.group(1);
+                components.add(component);
+                remaining = remaining.substring(matcher.end()).trim();
+                if (remaining.startsWith("市辖区")) {
+                    remaining = remaining.substring(3);
+                }
+            } else {
+                components.add("");
+            }
+        }
+
+        if (!remaining.isEmpty()) {
+            components.add(remaining);
+        }
+        return components;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.support.SyntheticAddressGenerator;
+import com.example.addressmatch.util.CommonUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 地址树版本发布：增量插入的版本在 publish 前不可见，discard 后当前版本不变；
+ * 增量树与全量树一起匹配的结果与全量重建相同；启动时加载与表A指纹一致的快照
+ */
+class AddressTreeBuilderTest {
+
+    @Test
+    void pendingInsertIsPublishedOnlyOnCommit() {
+        AddressTreeBuilder builder = builder();
+        builder.buildAddressTree(addresses(1, "广东省广州市天河区五山街道华南社区科华路1号")).close();
+        List<TableA> added = addresses(2, "广东省广州市天河区五山街道华南社区科华路2号");
+        String key = CommonUtils.cleanAddress(added.get(0).getAddressA());
+
+        AddressTreeBuilder.PendingInsert discarded = builder.prepareInsert(added);
+        assertArrayEquals(new long[]{2}, discarded.getTree().findExact(key));
+        assertArrayEquals(new long[0], exactIds(builder, key));
+        discarded.discard();
+        assertArrayEquals(new long[0], exactIds(builder, key));
+
+        AddressTreeBuilder.PendingInsert published = builder.prepareInsert(added);
+        long version = published.getTree().getVersion();
+        published.publish();
+        assertArrayEquals(new long[]{2}, exactIds(builder, key));
+        try (AddressTreeSnapshot.Lease current = builder.acquire()) {
+            assertEquals(version, current.getVersion());
+        }
+    }
+
+    @Test
+    void insertTouchesOnlyDeltaAndAffectedSubtree() {
+        AddressTreeBuilder builder = builder();
+        builder.buildAddressTree(addresses(1,
+                "广东省广州市天河区五山街道华南社区科华路1号",
+                "广东省广州市越秀区北京街道南华社区文德路8号")).close();
+        AddressTreeSnapshot.Lease before = builder.acquire();
+
+        Set<Long> affected = builder.insertAddresses(addresses(3, "广东省广州市天河区五山街道华南社区科华路1号"));
+        // 新叶子的父节点下：全量树中的同一地址和增量树中的新地址，不含其他子树
+        assertEquals(new HashSet<>(Arrays.asList(1L, 3L)), affected);
+        try (AddressTreeSnapshot.Lease after = builder.acquire()) {
+            assertTrue(before.getTree() == after.getTree());
+            assertNotNull(after.getDelta());
+            assertEquals(1, after.getDelta().getAddressCount());
+        }
+        before.close();
+    }
+
+    @Test
+    void incrementalInsertsMatchFullRebuild() {
+        SyntheticAddressGenerator generator = new SyntheticAddressGenerator(11L);
+        List<String> reference = generator.referenceSet(2400);
+        List<TableA> tableA = new ArrayList<>(reference.size());
+        for (int i = 0; i < reference.size(); i++) {
+            tableA.addAll(addresses(i + 1, reference.get(i)));
+        }
+
+        AddressTreeBuilder full = builder();
+        AddressTreeBuilder incremental = builder();
+        full.buildAddressTree(tableA).close();
+        incremental.buildAddressTree(tableA.subList(0, 2000)).close();
+        for (int from = 2000; from < tableA.size(); from += 100) {
+            incremental.insertAddresses(tableA.subList(from, from + 100));
+        }
+
+        MultiGranularityMatcher fullMatcher = ShardedAddressTreeTest.matcher(full);
+        MultiGranularityMatcher incrementalMatcher = ShardedAddressTreeTest.matcher(incremental);
+        try (AddressTreeSnapshot.Lease fullTree = full.acquire();
+             AddressTreeSnapshot.Lease incrementalTree = incremental.acquire()) {
+            for (SyntheticAddressGenerator.Query query : generator.querySet(reference, 800)) {
+                List<MatchCandidate> expected = fullMatcher.matchAddress(query.getAddress(), fullTree);
+                List<MatchCandidate> actual = incrementalMatcher.matchAddress(query.getAddress(), incrementalTree);
+                assertEquals(expected.isEmpty() ? null : expected.get(0).getScore(),
+                        actual.isEmpty() ? null : actual.get(0).getScore(), query::getAddress);
+            }
+        }
+    }
+
+    @Test
+    void startupLoadsSnapshotOnlyForMatchingFingerprint(@TempDir Path dir) {
+        List<TableA> tableA = addresses(1, "广东省广州市天河区五山街道华南社区科华路1号");
+        TreeSnapshotStore.Fingerprint fingerprint = new TreeSnapshotStore.Fingerprint(1, 1, 1, 22, 7);
+        TreeSnapshotStore saving = snapshotStore(dir, fingerprint);
+        try (AddressTreeSnapshot.Lease tree = builder().buildAddressTree(tableA)) {
+            saving.save(tree.getTree(), fingerprint);
+        }
+
+        AddressTreeBuilder stale = builder();
+        ReflectionTestUtils.setField(stale, "snapshotStore",
+                snapshotStore(dir, new TreeSnapshotStore.Fingerprint(2, 2, 3, 44, 9)));
+        stale.loadSnapshotOnStartup();
+        assertFalse(stale.isBuilt());
+
+        AddressTreeBuilder restarted = builder();
+        ReflectionTestUtils.setField(restarted, "snapshotStore", snapshotStore(dir, fingerprint));
+        restarted.loadSnapshotOnStartup();
+        assertTrue(restarted.isBuilt());
+        assertArrayEquals(new long[]{1}, exactIds(restarted, CommonUtils.cleanAddress(tableA.get(0).getAddressA())));
+    }
+
+    /**
+     * 表A指纹固定为给定值的快照存储（不访问数据库）
+     */
+    private static TreeSnapshotStore snapshotStore(Path dir, TreeSnapshotStore.Fingerprint fingerprint) {
+        TreeSnapshotStore store = new TreeSnapshotStore() {
+            @Override
+            public Fingerprint currentFingerprint() {
+                return fingerprint;
+            }
+        };
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "path", dir.resolve("address-tree.snap").toString());
+        return store;
+    }
+
+    private static long[] exactIds(AddressTreeBuilder builder, String key) {
+        try (AddressTreeSnapshot.Lease tree = builder.acquire()) {
+            return tree.findExact(key);
+        }
+    }
+
+    static AddressTreeBuilder builder() {
+        AddressTreeBuilder builder = new AddressTreeBuilder();
+        ReflectionTestUtils.setField(builder, "addressParser", new AddressParserService());
+        ReflectionTestUtils.setField(builder, "shardStore", new TreeShardStore());
+        return builder;
+    }
+
+    static List<TableA> addresses(long firstId, String... texts) {
+        List<TableA> addresses = new ArrayList<>(texts.length);
+        for (int i = 0; i < texts.length; i++) {
+            TableA address = new TableA();
+            address.setId(firstId + i);
+            address.setAddressA(texts[i]);
+            addresses.add(address);
+        }
+        return addresses;
+    }
+}
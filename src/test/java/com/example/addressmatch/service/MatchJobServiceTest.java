@@ -0,0 +1,93 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.model.MatchJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 匹配任务互斥：全量匹配运行时拒绝表D加入表A（增量重匹配），反之亦然
+ */
+class MatchJobServiceTest {
+
+    private final CountDownLatch matchStarted = new CountDownLatch(1);
+    private final CountDownLatch approveStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseMatch = new CountDownLatch(1);
+    private final CountDownLatch releaseApprove = new CountDownLatch(1);
+    private final AtomicInteger approved = new AtomicInteger();
+
+    @Test
+    void approvalAndBatchMatchExcludeEachOther() throws Exception {
+        MatchJobService service = service();
+
+        MatchJob job = service.submit();
+        assertTrue(matchStarted.await(10, TimeUnit.SECONDS));
+        assertThrows(MatchConflictException.class, () -> service.addTableDToTableA(Collections.singletonList(1L)));
+        assertEquals(0, approved.get());
+        releaseMatch.countDown();
+        awaitFinished(job);
+
+        Thread approval = new Thread(() -> service.addTableDToTableA(Collections.singletonList(1L)));
+        approval.start();
+        assertTrue(approveStarted.await(10, TimeUnit.SECONDS));
+        assertThrows(MatchConflictException.class, service::submit);
+        releaseApprove.countDown();
+        approval.join(10_000);
+        assertEquals(1, approved.get());
+        assertEquals(MatchJob.SUCCEEDED, service.listJobs().get(0).getStatus());
+    }
+
+    private MatchJobService service() {
+        AddressMatchService addressMatchService = new AddressMatchService() {
+            @Override
+            public void performSimpleMatch(MatchJob job) {
+                matchStarted.countDown();
+                await(releaseMatch);
+            }
+
+            @Override
+            public Map<String, Object> getSimpleStats() {
+                return Collections.emptyMap();
+            }
+
+            @Override
+            public int addTableDToTableA(List<Long> tableDIds) {
+                approveStarted.countDown();
+                await(releaseApprove);
+                return approved.addAndGet(tableDIds.size());
+            }
+        };
+        MatchJobService service = new MatchJobService();
+        ReflectionTestUtils.setField(service, "addressMatchService", addressMatchService);
+        ReflectionTestUtils.setField(service, "taskExecutor", new SimpleAsyncTaskExecutor());
+        ReflectionTestUtils.setField(service, "historySize", 20);
+        return service;
+    }
+
+    private static void awaitFinished(MatchJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (job.isActive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(MatchJob.SUCCEEDED, job.getStatus());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
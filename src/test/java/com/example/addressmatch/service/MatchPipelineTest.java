@@ -0,0 +1,77 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.entity.MatchCheckpoint;
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.entity.TableB;
+import com.example.addressmatch.entity.TableC;
+import com.example.addressmatch.entity.TableD;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.DuplicateGroups;
+import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.model.MatchJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分块匹配的结果去向：精确匹配进入表C，近似匹配兜底找到的错字地址只作为建议进入表D
+ */
+class MatchPipelineTest {
+
+    private static final String ADDRESS = "广东省广州市天河区五山街道华南社区科华路1号";
+    // 区名错一个字，逐级遍历在区一级中断
+    private static final String TYPO = "广东省广州市天和区五山街道华南社区科华路1号";
+
+    @Test
+    void oneEditMatchLandsInTableD() {
+        List<TableA> tableA = new ArrayList<>();
+        tableA.addAll(AddressTreeBuilderTest.addresses(1, ADDRESS));
+        tableA.addAll(AddressTreeBuilderTest.addresses(2, "广东省广州市越秀区北京街道府前社区府前路1号"));
+        AddressTreeBuilder builder = AddressTreeBuilderTest.builder();
+        MultiGranularityMatcher matcher = ShardedAddressTreeTest.matcher(builder);
+        MatchPipeline pipeline = new MatchPipeline();
+        ReflectionTestUtils.setField(pipeline, "matcher", matcher);
+
+        MatchPipeline.ChunkResult result;
+        try (AddressTreeSnapshot.Lease lease = builder.buildAddressTree(tableA)) {
+            // 近似匹配确实找到了表A地址，但分数低于成功阈值
+            List<MatchCandidate> candidates = matcher.matchAddress(TYPO, lease);
+            assertFalse(candidates.isEmpty());
+            assertEquals(1L, candidates.get(0).getTableA().getId());
+            assertTrue(candidates.get(0).getScore() < 0.95);
+
+            MatchCheckpoint checkpoint = new MatchCheckpoint();
+            MatchPipeline.MatchProgress progress = new MatchPipeline.MatchProgress(2, System.currentTimeMillis(),
+                    new MatchJob(1L), checkpoint);
+            result = pipeline.matchChunk(Arrays.asList(tableB(1L, ADDRESS), tableB(2L, TYPO)), lease, 7L,
+                    progress, new MatchPipeline.SharedMatches(DuplicateGroups.EMPTY));
+        }
+        LongAdder relaxedHits = (LongAdder) ReflectionTestUtils.getField(matcher, "relaxedHits");
+        assertTrue(relaxedHits.sum() > 0);
+
+        List<?> tableC = (List<?>) ReflectionTestUtils.getField(result, "tableCResults");
+        List<?> tableD = (List<?>) ReflectionTestUtils.getField(result, "tableDResults");
+        assertEquals(1, tableC.size());
+        assertEquals(1L, ((TableC) tableC.get(0)).getAId());
+        assertEquals(1, tableD.size());
+        TableD pending = (TableD) tableD.get(0);
+        assertEquals(2L, pending.getBId());
+        assertEquals("PENDING", pending.getStatus());
+        assertEquals(7L, pending.getRunId());
+    }
+
+    private static TableB tableB(Long id, String address) {
+        TableB tableB = new TableB();
+        tableB.setId(id);
+        tableB.setAddressB(address);
+        return tableB;
+    }
+}
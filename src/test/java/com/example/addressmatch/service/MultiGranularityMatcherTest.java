@@ -0,0 +1,174 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.CompactAddressTree;
+import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.support.SyntheticAddressGenerator;
+import com.example.addressmatch.util.CommonUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 逐粒度前沿遍历与朴素实现的差分测试：朴素实现每级都从根节点递归，线性扫描子节点并用
+ * CommonUtils.isFuzzyMatch 比较名称，候选按分数稳定排序后取前K名；两者的候选（表A ID、分数、顺序）必须相同。
+ * 另有前K名候选堆与排序实现的差分测试
+ */
+class MultiGranularityMatcherTest {
+
+    private static final int TOP_K = 20;
+
+    private final AddressParserService parser = new AddressParserService();
+
+    @Test
+    void frontierWalkEqualsNaiveWalk() {
+        SyntheticAddressGenerator generator = new SyntheticAddressGenerator(3L);
+        List<String> reference = generator.referenceSet(3000);
+        List<TableA> tableA = new ArrayList<>();
+        for (String address : reference) {
+            tableA.addAll(AddressTreeBuilderTest.addresses(tableA.size() + 1, address));
+        }
+        // 部分地址增量插入，覆盖全量树与增量树一起遍历
+        AddressTreeBuilder builder = AddressTreeBuilderTest.builder();
+        builder.buildAddressTree(tableA.subList(0, 2700)).close();
+        builder.insertAddresses(tableA.subList(2700, tableA.size()));
+
+        MultiGranularityMatcher matcher = ShardedAddressTreeTest.matcher(builder);
+        // 关闭近似匹配兜底，只比较逐级遍历
+        ReflectionTestUtils.setField(matcher, "relaxedMaxEdits", 0);
+
+        Map<String, TreeSet<Long>> exact = new HashMap<>();
+        for (TableA address : tableA) {
+            String key = CommonUtils.cleanAddress(address.getAddressA());
+            exact.computeIfAbsent(key, k -> new TreeSet<>()).add(address.getId());
+        }
+
+        int walked = 0;
+        try (AddressTreeSnapshot.Lease lease = builder.acquire()) {
+            List<CompactAddressTree> trees = Arrays.asList(lease.getTree(), lease.getDelta());
+            for (SyntheticAddressGenerator.Query query : generator.querySet(reference, 2000)) {
+                String key = CommonUtils.cleanAddress(query.getAddress());
+                List<String> expected = exact.containsKey(key)
+                        ? exactCandidates(exact.get(key)) : naiveMatch(trees, parser.parseCleanedAddress(key));
+                if (!exact.containsKey(key)) {
+                    walked++;
+                }
+                assertEquals(expected, describe(matcher.matchAddress(query.getAddress(), lease)), query::getAddress);
+            }
+        }
+        assertTrue(walked > 0);
+    }
+
+    @Test
+    void topKEqualsStableSort() {
+        Random random = new Random(20261018L);
+        for (int round = 0; round < 2000; round++) {
+            int capacity = 1 + random.nextInt(25);
+            int offers = random.nextInt(80);
+            MultiGranularityMatcher.TopKCandidates topK = new MultiGranularityMatcher.TopKCandidates(capacity);
+            List<MatchCandidate> all = new ArrayList<>();
+            for (int i = 0; i < offers; i++) {
+                // 分数取少数几个值，制造大量同分
+                double score = random.nextInt(6) / 5.0;
+                topK.offer(i, score);
+                all.add(candidate(i, score));
+            }
+            // 稳定排序：同分保持加入顺序
+            all.sort(Comparator.comparingDouble(MatchCandidate::getScore).reversed());
+            assertEquals(describe(all.subList(0, Math.min(capacity, all.size()))), describe(topK.toList()));
+        }
+    }
+
+    @Test
+    void topKIgnoresAddressAlreadyKept() {
+        MultiGranularityMatcher.TopKCandidates topK = new MultiGranularityMatcher.TopKCandidates(3);
+        topK.offer(1, 0.5);
+        topK.offer(2, 0.6);
+        topK.offer(1, 0.9);
+        assertEquals(Arrays.asList("2@0.6", "1@0.5"), describe(topK.toList()));
+    }
+
+    /**
+     * 原逐级实现：第 g 级从根节点递归到第 g 层，每个节点先走名称相同的子节点、再按子节点顺序走包含关系的子节点，
+     * 到达的带地址叶子按路径上名称相同的级数打分；有高于0.95分的结果时返回，否则返回最后一个非空的级
+     */
+    private static List<String> naiveMatch(List<CompactAddressTree> trees, List<String> components) {
+        List<MatchCandidate> result = new ArrayList<>();
+        for (int granularity = 1; granularity <= components.size(); granularity++) {
+            List<MatchCandidate> level = new ArrayList<>();
+            for (CompactAddressTree tree : trees) {
+                walk(tree, CompactAddressTree.ROOT, components, granularity, 0, level);
+            }
+            level.sort(Comparator.comparingDouble(MatchCandidate::getScore).reversed());
+            level = new ArrayList<>(level.subList(0, Math.min(TOP_K, level.size())));
+            if (!level.isEmpty()) {
+                if (level.get(0).getScore() > 0.95) {
+                    return describe(level);
+                }
+                result = level;
+            }
+        }
+        return describe(result);
+    }
+
+    private static void walk(CompactAddressTree tree, int node, List<String> components, int granularity,
+                             int exactMatches, List<MatchCandidate> found) {
+        int level = tree.getDepth(node);
+        if (level == granularity) {
+            if (tree.isLeaf(node) && tree.hasAddresses(node)) {
+                double score = Math.min(1.0, (double) exactMatches / granularity * 0.9
+                        + Math.min(1.0, level / 8.0) * 0.1);
+                for (int a = tree.getAddressStart(node); a < tree.getAddressEnd(node); a++) {
+                    found.add(candidate(tree.getAddressId(a), score));
+                }
+            }
+            return;
+        }
+        String component = components.get(level);
+        String sameName = component.isEmpty() ? CompactAddressTree.placeholderName(level + 1) : component;
+        int exactChild = -1;
+        if (!component.isEmpty()) {
+            for (int child = tree.getFirstChild(node); child < tree.getChildEnd(node); child++) {
+                if (tree.getName(child).equals(component)) {
+                    exactChild = child;
+                    walk(tree, child, components, granularity, exactMatches + 1, found);
+                }
+            }
+        }
+        for (int child = tree.getFirstChild(node); child < tree.getChildEnd(node); child++) {
+            if (child != exactChild && CommonUtils.isFuzzyMatch(tree.getName(child), component)) {
+                int same = tree.getName(child).equals(sameName) ? 1 : 0;
+                walk(tree, child, components, granularity, exactMatches + same, found);
+            }
+        }
+    }
+
+    private static List<String> exactCandidates(Set<Long> ids) {
+        List<String> result = new ArrayList<>();
+        for (long id : ids) {
+            if (result.size() < TOP_K) {
+                result.add(id + "@1.0");
+            }
+        }
+        return result;
+    }
+
+    private static MatchCandidate candidate(long id, double score) {
+        TableA address = new TableA();
+        address.setId(id);
+        return new MatchCandidate(address, score);
+    }
+
+    private static List<String> describe(List<MatchCandidate> candidates) {
+        List<String> result = new ArrayList<>(candidates.size());
+        for (MatchCandidate candidate : candidates) {
+            result.add(candidate.getTableA().getId() + "@" + candidate.getScore());
+        }
+        return result;
+    }
+}
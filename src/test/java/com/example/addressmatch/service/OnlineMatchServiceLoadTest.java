@@ -0,0 +1,141 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.OnlineBatchMatchResult;
+import com.example.addressmatch.model.OnlineMatchResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在线匹配：在内存地址树上检查批量匹配的延迟预算。
+ * 单条匹配的 p50/p99 延迟依赖机器负载，不在默认测试中检查，见 support.OnlineLatencyHarness
+ */
+class OnlineMatchServiceLoadTest {
+
+    private static final int TABLE_A_SIZE = 20000;
+
+    private static final String[] PROVINCES = {"广东省", "浙江省", "江苏省", "四川省", "内蒙古自治区", "北京市"};
+    private static final String[] CITIES = {"广州市", "杭州市", "南京市", "成都市", "呼和浩特市", "市辖区"};
+    private static final String[] DISTRICTS = {"天河区", "西湖区", "鼓楼区", "武侯区", "新城区", "朝阳区", "海珠区"};
+    private static final String[] STREETS = {"五山街道", "石牌街道", "城关镇", "新华街道", ""};
+    private static final String[] COMMUNITIES = {"华南社区", "东村", "幸福社区", "光明村", ""};
+    private static final String[] ROADS = {"科华路", "中山大道", "建设路", "人民街", "文三路"};
+
+    private final Random random = new Random(42);
+    private final List<TableA> tableA = new ArrayList<>();
+    private OnlineMatchService service;
+    private AddressTreeSnapshot.Lease lease;
+
+    @BeforeEach
+    void buildTree() {
+        AddressParserService parser = new AddressParserService();
+        AddressTreeBuilder builder = new AddressTreeBuilder();
+        ReflectionTestUtils.setField(builder, "addressParser", parser);
+        ReflectionTestUtils.setField(builder, "shardStore", new TreeShardStore());
+
+        MatchMetrics metrics = new MatchMetrics();
+        ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(metrics, "treeBuilder", builder);
+        ReflectionTestUtils.setField(metrics, "slowThresholdMs", 100L);
+        metrics.init();
+
+        MultiGranularityMatcher matcher = new MultiGranularityMatcher();
+        ReflectionTestUtils.setField(matcher, "addressParser", parser);
+        ReflectionTestUtils.setField(matcher, "metrics", metrics);
+        ReflectionTestUtils.setField(matcher, "defaultMaxSize", 10000L);
+        ReflectionTestUtils.setField(matcher, "topKLimit", 20);
+        ReflectionTestUtils.setField(matcher, "relaxedMaxEdits", 2);
+        ReflectionTestUtils.setField(matcher, "relaxedBudgetMs", 3L);
+        ReflectionTestUtils.setField(matcher, "relaxedBeamWidth", 256);
+        matcher.initCaches();
+
+        service = new OnlineMatchService();
+        ReflectionTestUtils.setField(service, "treeBuilder", builder);
+        ReflectionTestUtils.setField(service, "matcher", matcher);
+        ReflectionTestUtils.setField(service, "defaultTopK", 5);
+        ReflectionTestUtils.setField(service, "maxTopK", 20);
+        ReflectionTestUtils.setField(service, "maxBatchSize", 1000);
+        ReflectionTestUtils.setField(service, "latencyBudgetMs", 50L);
+
+        for (int i = 0; i < TABLE_A_SIZE; i++) {
+            TableA address = new TableA();
+            address.setId((long) i + 1);
+            address.setAddressA(randomAddress());
+            tableA.add(address);
+        }
+        lease = builder.buildAddressTree(tableA);
+    }
+
+    @AfterEach
+    void releaseTree() {
+        lease.close();
+    }
+
+    @Test
+    void batchMatchStopsWhenBudgetIsExhausted() {
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            queries.add(randomQuery());
+        }
+
+        // 冷启动时未经JIT预热，这里只验证预算充足时全部匹配
+        ReflectionTestUtils.setField(service, "latencyBudgetMs", 10_000L);
+        OnlineBatchMatchResult withinBudget = service.matchBatch(queries, 3);
+        assertEquals(queries.size(), withinBudget.getResults().size());
+        assertEquals(0, withinBudget.getSkippedCount());
+
+        ReflectionTestUtils.setField(service, "latencyBudgetMs", 0L);
+        OnlineBatchMatchResult exhausted = service.matchBatch(queries, 3);
+        assertEquals(queries.size(), exhausted.getResults().size());
+        assertTrue(exhausted.isOverBudget());
+        assertEquals(OnlineMatchResult.STATUS_SKIPPED,
+                exhausted.getResults().get(queries.size() - 1).getStatus());
+    }
+
+    /**
+     * 四分之三取自表A（部分去掉街道或带备注），其余为随机地址
+     */
+    private String randomQuery() {
+        if (random.nextInt(4) == 0) {
+            return randomAddress();
+        }
+        String address = tableA.get(random.nextInt(tableA.size())).getAddressA();
+        switch (random.nextInt(3)) {
+            case 0:
+                return address.replaceFirst("街道", "");
+            case 1:
+                return " " + address + "（备注）";
+            default:
+                return address;
+        }
+    }
+
+    private String randomAddress() {
+        StringBuilder sb = new StringBuilder()
+                .append(pick(PROVINCES)).append(pick(CITIES)).append(pick(DISTRICTS))
+                .append(pick(STREETS)).append(pick(COMMUNITIES)).append(pick(ROADS))
+                .append(random.nextInt(200) + 1).append("号");
+        if (random.nextBoolean()) {
+            sb.append(random.nextInt(30) + 1).append("栋");
+        }
+        if (random.nextBoolean()) {
+            sb.append(random.nextInt(4) + 1).append("单元").append(random.nextInt(20) + 101).append("室");
+        }
+        return sb.toString();
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.AddressmatchApplication;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.OnlineMatchRequest;
+import com.example.addressmatch.model.OnlineMatchResult;
+import com.example.addressmatch.repository.TableARepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 重启后的在线匹配：第一个上下文写入表A并保存地址树快照，第二个上下文（同一数据库、同一快照）
+ * 启动完成时已从快照加载地址树，不执行批量匹配即可通过 match-one 接口匹配
+ */
+class OnlineMatchStartupTest {
+
+    private static final String ADDRESS = "广东省广州市天河区五山街道华南社区科华路1号";
+
+    @Test
+    void freshContextServesMatchOneFromSnapshot(@TempDir Path dir) {
+        try (ConfigurableApplicationContext first = start(dir)) {
+            first.getBean(JdbcTemplate.class).update("INSERT INTO table_a (id, address_a) VALUES (?, ?)", 1L, ADDRESS);
+            TreeSnapshotStore.Fingerprint fingerprint = first.getBean(TreeSnapshotStore.class).currentFingerprint();
+            AddressTreeBuilder builder = first.getBean(AddressTreeBuilder.class);
+            try (AddressTreeSnapshot.Lease tree = builder.buildAddressTree(
+                    first.getBean(TableARepository.class).findAll())) {
+                builder.saveSnapshot(tree.getTree(), fingerprint);
+            }
+        }
+
+        try (ConfigurableApplicationContext restarted = start(dir)) {
+            assertTrue(restarted.getBean(OnlineMatchService.class).isReady());
+
+            OnlineMatchRequest request = new OnlineMatchRequest();
+            request.setAddress(ADDRESS);
+            String url = "http://localhost:" + restarted.getEnvironment().getProperty("local.server.port")
+                    + "/api/address/match-one";
+            ResponseEntity<OnlineMatchResult> response =
+                    new RestTemplate().postForEntity(url, request, OnlineMatchResult.class);
+            assertEquals(200, response.getStatusCodeValue());
+            OnlineMatchResult result = response.getBody();
+            assertTrue(result.isMatched());
+            assertFalse(result.getCandidates().isEmpty());
+            assertEquals(1L, result.getCandidates().get(0).getAId());
+        }
+    }
+
+    /**
+     * 嵌入式H2（application-h2.yml），数据库文件和快照放在临时目录，两次启动共用
+     */
+    private static ConfigurableApplicationContext start(Path dir) {
+        return new SpringApplicationBuilder(AddressmatchApplication.class)
+                .profiles("h2")
+                // 命令行参数优先于 application-h2.yml
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:file:" + dir.resolve("address_match")
+                                + ";MODE=MySQL;DB_CLOSE_ON_EXIT=FALSE;INIT=CREATE ALIAS IF NOT EXISTS CRC32 FOR "
+                                + "'com.example.addressmatch.support.H2Functions.crc32'",
+                        "--logging.file.name=" + dir.resolve("address-match.log"),
+                        "--app.tree.snapshot-enabled=true",
+                        "--app.tree.snapshot-path=" + dir.resolve("address-tree.snap"));
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.support.SyntheticAddressGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按省分片与整树匹配的差分测试：同一批表A分别建整树和分片树，表B（含省、市错字和缺省的写法）
+ * 在两者上的候选（表A ID、分数、顺序）必须完全相同；地址树指标按分片合计后与整树一致
+ */
+class ShardedAddressTreeTest {
+
+    private static final int TABLE_A_SIZE = 3000;
+    private static final int QUERIES = 1500;
+    private static final String TYPO_FROM = "东江西南北山海湖河安州";
+    private static final String TYPO_TO = "冬姜希男背珊嗨糊和按洲";
+
+    @TempDir
+    Path shardDir;
+
+    private final Random random = new Random(20261018L);
+
+    @Test
+    void shardedMatchesEqualWholeTreeMatches() {
+        SyntheticAddressGenerator generator = new SyntheticAddressGenerator(7L);
+        List<String> reference = generator.referenceSet(TABLE_A_SIZE);
+        List<TableA> tableA = new ArrayList<>(reference.size());
+        for (int i = 0; i < reference.size(); i++) {
+            TableA address = new TableA();
+            address.setId((long) i + 1);
+            address.setAddressA(reference.get(i));
+            tableA.add(address);
+        }
+
+        List<String> queries = new ArrayList<>();
+        for (SyntheticAddressGenerator.Query query : generator.querySet(reference, QUERIES)) {
+            queries.add(query.getAddress());
+        }
+        List<String> typoQueries = new ArrayList<>();
+        for (int i = 0; i < QUERIES / 3; i++) {
+            String address = reference.get(random.nextInt(reference.size()));
+            int city = address.indexOf('市', 1);
+            // 省名错字；去掉省后市名错字；去掉省和市
+            typoQueries.add(typo(address, 0, address.indexOf('省') > 0 ? address.indexOf('省') : 2));
+            typoQueries.add(typo(address.substring(address.indexOf('省') + 1), 0, Math.max(1, city - 1)));
+            typoQueries.add(city > 0 ? address.substring(city + 1) : address);
+        }
+        queries.addAll(typoQueries);
+
+        AddressTreeBuilder wholeBuilder = builder(false);
+        AddressTreeBuilder shardedBuilder = builder(true);
+        MultiGranularityMatcher wholeMatcher = matcher(wholeBuilder);
+        MultiGranularityMatcher shardedMatcher = matcher(shardedBuilder);
+
+        try (AddressTreeSnapshot.Lease whole = wholeBuilder.buildAddressTree(tableA);
+             AddressTreeSnapshot.Lease sharded = shardedBuilder.buildAddressTree(tableA)) {
+            assertNotNull(sharded.getShards());
+            for (String query : queries) {
+                List<MatchCandidate> expected = wholeMatcher.matchAddress(query, whole);
+                List<MatchCandidate> actual = shardedMatcher.matchAddress(query, sharded);
+                assertEquals(describe(expected), describe(actual), () -> "query: " + query);
+            }
+        }
+        // 错字查询确实经过了近似匹配兜底
+        LongAdder relaxedHits = (LongAdder) ReflectionTestUtils.getField(shardedMatcher, "relaxedHits");
+        assertTrue(relaxedHits.sum() > 0);
+    }
+
+    @Test
+    void treeGaugesAggregateShardsAndDelta() {
+        SyntheticAddressGenerator generator = new SyntheticAddressGenerator(13L);
+        List<TableA> tableA = new ArrayList<>();
+        for (String address : generator.referenceSet(1200)) {
+            tableA.addAll(AddressTreeBuilderTest.addresses(tableA.size() + 1, address));
+        }
+        AddressTreeBuilder wholeBuilder = builder(false);
+        AddressTreeBuilder shardedBuilder = builder(true);
+        wholeBuilder.buildAddressTree(tableA.subList(0, 1000)).close();
+        shardedBuilder.buildAddressTree(tableA.subList(0, 1000)).close();
+        wholeBuilder.insertAddresses(tableA.subList(1000, tableA.size()));
+        shardedBuilder.insertAddresses(tableA.subList(1000, tableA.size()));
+
+        try (AddressTreeSnapshot.Lease whole = wholeBuilder.acquire();
+             AddressTreeSnapshot.Lease sharded = shardedBuilder.acquire()) {
+            assertEquals(tableA.size(), MatchMetrics.addressCount(whole));
+            assertEquals(tableA.size(), MatchMetrics.addressCount(sharded));
+            assertEquals(MatchMetrics.nodeCount(whole), MatchMetrics.nodeCount(sharded));
+            assertEquals(MatchMetrics.maxDepth(whole), MatchMetrics.maxDepth(sharded));
+            assertTrue(MatchMetrics.bytes(sharded) > sharded.getTree().estimateBytes());
+        }
+    }
+
+    /**
+     * 把 [from, to) 中第一个可替换的字换成形近/同音字
+     */
+    private static String typo(String address, int from, int to) {
+        char[] chars = address.toCharArray();
+        for (int i = from; i < Math.min(to, chars.length); i++) {
+            int k = TYPO_FROM.indexOf(chars[i]);
+            if (k >= 0) {
+                chars[i] = TYPO_TO.charAt(k);
+                return new String(chars);
+            }
+        }
+        return address;
+    }
+
+    private static List<String> describe(List<MatchCandidate> candidates) {
+        List<String> result = new ArrayList<>(candidates.size());
+        for (MatchCandidate candidate : candidates) {
+            result.add(candidate.getTableA().getId() + "@" + candidate.getScore());
+        }
+        return result;
+    }
+
+    private AddressTreeBuilder builder(boolean sharding) {
+        TreeShardStore shardStore = new TreeShardStore();
+        ReflectionTestUtils.setField(shardStore, "enabled", sharding);
+        ReflectionTestUtils.setField(shardStore, "dir", shardDir.toString());
+        ReflectionTestUtils.setField(shardStore, "memoryBudgetMb", 64L);
+
+        AddressTreeBuilder builder = new AddressTreeBuilder();
+        ReflectionTestUtils.setField(builder, "addressParser", new AddressParserService());
+        ReflectionTestUtils.setField(builder, "shardStore", shardStore);
+        return builder;
+    }
+
+    /**
+     * 近似匹配兜底的时间上限放宽，避免超时放弃造成两边结果不同；集束取小值以覆盖剪枝
+     */
+    static MultiGranularityMatcher matcher(AddressTreeBuilder builder) {
+        MatchMetrics metrics = new MatchMetrics();
+        ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(metrics, "treeBuilder", builder);
+        ReflectionTestUtils.setField(metrics, "slowThresholdMs", 100L);
+        metrics.init();
+
+        MultiGranularityMatcher matcher = new MultiGranularityMatcher();
+        ReflectionTestUtils.setField(matcher, "addressParser", new AddressParserService());
+        ReflectionTestUtils.setField(matcher, "metrics", metrics);
+        ReflectionTestUtils.setField(matcher, "defaultMaxSize", 10000L);
+        ReflectionTestUtils.setField(matcher, "topKLimit", 20);
+        ReflectionTestUtils.setField(matcher, "relaxedMaxEdits", 2);
+        ReflectionTestUtils.setField(matcher, "relaxedBudgetMs", 60_000L);
+        ReflectionTestUtils.setField(matcher, "relaxedBeamWidth", 16);
+        matcher.initCaches();
+        return matcher;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.model.DuplicateGroups;
+import com.example.addressmatch.model.MatchCandidate;
+import com.example.addressmatch.util.CommonUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 重复地址组的共享匹配：同组各行并发到达时只匹配一次，最后一行取走后移除；匹配失败时下一行重新匹配
+ */
+class SharedMatchesTest {
+
+    private static final String ADDRESS = "广东省广州市天河区五山街道华南社区科华路1号";
+    private static final int GROUP_SIZE = 16;
+
+    @Test
+    void concurrentRowsOfOneGroupShareOneMatch() throws Exception {
+        MatchPipeline.SharedMatches shared = new MatchPipeline.SharedMatches(groups(GROUP_SIZE));
+        AtomicInteger matched = new AtomicInteger();
+        List<MatchCandidate> result = candidates();
+
+        ExecutorService pool = Executors.newFixedThreadPool(GROUP_SIZE);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<MatchCandidate>>> futures = new ArrayList<>();
+            for (int i = 0; i < GROUP_SIZE; i++) {
+                // 带备注、空白的写法规范化后相同，属于同一组
+                String address = i % 2 == 0 ? ADDRESS : " " + ADDRESS + " ";
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return shared.match(address, () -> {
+                        matched.incrementAndGet();
+                        sleep();
+                        return result;
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<List<MatchCandidate>> future : futures) {
+                assertSame(result, future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, matched.get());
+        assertTrue(entries(shared).isEmpty());
+    }
+
+    @Test
+    void failedMatchIsRetriedByNextRow() {
+        MatchPipeline.SharedMatches shared = new MatchPipeline.SharedMatches(groups(3));
+        List<MatchCandidate> result = candidates();
+
+        assertThrows(IllegalStateException.class, () -> shared.match(ADDRESS, () -> {
+            throw new IllegalStateException("匹配失败");
+        }));
+        assertSame(result, shared.match(ADDRESS, () -> result));
+        assertEquals(1, entries(shared).size());
+        assertSame(result, shared.match(ADDRESS, Collections::emptyList));
+        assertTrue(entries(shared).isEmpty());
+    }
+
+    @Test
+    void addressesOutsideGroupsAreMatchedEveryTime() {
+        MatchPipeline.SharedMatches shared = new MatchPipeline.SharedMatches(groups(2));
+        AtomicInteger matched = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            shared.match("浙江省杭州市西湖区文三路12号", () -> {
+                matched.incrementAndGet();
+                return candidates();
+            });
+        }
+        assertEquals(3, matched.get());
+        assertTrue(entries(shared).isEmpty());
+    }
+
+    private static DuplicateGroups groups(int size) {
+        long key = DuplicateGroups.key(CommonUtils.cleanAddress(ADDRESS));
+        return new DuplicateGroups(new long[]{key}, new int[]{size}, size, 1, 0);
+    }
+
+    private static List<MatchCandidate> candidates() {
+        TableA address = new TableA();
+        address.setId(1L);
+        return Collections.singletonList(new MatchCandidate(address, 1.0));
+    }
+
+    private static Map<?, ?> entries(MatchPipeline.SharedMatches shared) {
+        return (Map<?, ?>) ReflectionTestUtils.getField(shared, "matches");
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
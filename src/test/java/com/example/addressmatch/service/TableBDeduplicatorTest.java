@@ -0,0 +1,122 @@
+package com.example.addressmatch.service;
+
+import com.example.addressmatch.model.DuplicateGroups;
+import com.example.addressmatch.support.SyntheticAddressGenerator;
+import com.example.addressmatch.util.CommonUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 表B去重扫描：内存中一次排序与溢写多个有序段后归并的结果相同，且与直接按规范化地址计数一致
+ */
+class TableBDeduplicatorTest {
+
+    private static final int ROWS = 25000;
+
+    @TempDir
+    Path spillDir;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private final List<String> addresses = new ArrayList<>(ROWS);
+
+    @BeforeEach
+    void seed() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE table_b (id BIGINT PRIMARY KEY, address_b VARCHAR(500))");
+
+        // 参考地址的带噪声变体，其中不少规范化后相同；另有空白地址（不参与分组）
+        SyntheticAddressGenerator generator = new SyntheticAddressGenerator(5L);
+        List<String> reference = generator.referenceSet(4000);
+        Random random = new Random(17L);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            String address = random.nextInt(50) == 0 ? "  " : generator.query(reference).getAddress();
+            addresses.add(address);
+            batch.add(new Object[]{(long) i + 1, address});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO table_b (id, address_b) VALUES (?, ?)", batch);
+    }
+
+    @AfterEach
+    void shutdown() {
+        database.shutdown();
+    }
+
+    @Test
+    void spilledScanEqualsInMemoryScan() throws IOException {
+        DuplicateGroups inMemory = deduplicator(1_000_000).scan(0);
+        DuplicateGroups spilled = deduplicator(3000).scan(0);
+
+        assertEquals(0, inMemory.getSpilledRuns());
+        assertTrue(spilled.getSpilledRuns() > 1);
+        assertSameGroups(expected(0), inMemory);
+        assertSameGroups(expected(0), spilled);
+        // 临时有序段在扫描结束后删除
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void resumedScanCountsOnlyRowsAfterCheckpoint() throws IOException {
+        long startId = ROWS / 3;
+        assertSameGroups(expected(startId), deduplicator(1_000_000).scan(startId));
+        assertSameGroups(expected(startId), deduplicator(2000).scan(startId));
+    }
+
+    private static void assertSameGroups(Map<String, Integer> expected, DuplicateGroups actual) {
+        long rows = 0;
+        int groups = 0;
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            rows += entry.getValue();
+            if (entry.getValue() > 1) {
+                groups++;
+            }
+            assertEquals((int) entry.getValue(), actual.sizeOf(DuplicateGroups.key(entry.getKey())), entry::getKey);
+        }
+        assertEquals(rows, actual.getRows());
+        assertEquals(expected.size(), actual.getDistinct());
+        assertEquals(groups, actual.getGroupCount());
+    }
+
+    /**
+     * ID 大于 startId 的行按规范化地址计数（规范化后为空的不计）
+     */
+    private Map<String, Integer> expected(long startId) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = (int) startId; i < addresses.size(); i++) {
+            String normalized = CommonUtils.cleanAddress(addresses.get(i));
+            if (!normalized.isEmpty()) {
+                counts.merge(normalized, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private TableBDeduplicator deduplicator(int memoryRows) {
+        TableBDeduplicator deduplicator = new TableBDeduplicator();
+        ReflectionTestUtils.setField(deduplicator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(deduplicator, "enabled", true);
+        ReflectionTestUtils.setField(deduplicator, "memoryRows", memoryRows);
+        ReflectionTestUtils.setField(deduplicator, "spillDir", spillDir.toString());
+        return deduplicator;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.addressmatch.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * H2 缺少的 MySQL 函数，在 application-h2.yml 的连接串中用 CREATE ALIAS 注册
+ */
+public final class H2Functions {
+
+    private H2Functions() {
+    }
+
+    /**
+     * 与 MySQL CRC32(str) 相同：UTF-8 字节的 CRC32，NULL 返回 NULL
+     */
+    public static Long crc32(String value) {
+        if (value == null) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(value.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
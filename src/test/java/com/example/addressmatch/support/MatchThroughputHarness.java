@@ -0,0 +1,185 @@
+package com.example.addressmatch.support;
+
+import com.example.addressmatch.model.MatchJob;
+import com.example.addressmatch.service.MatchEngine;
+import com.example.addressmatch.service.MatchJobService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 端到端吞吐量压测：在嵌入式H2（application-h2.yml）上按规模生成表A/表B，跑完整匹配任务，
+ * 输出各阶段耗时、吞吐量（条/秒）、峰值堆内存，并按标准答案统计准确率和召回率。
+ *
+ * 不在默认测试中运行（类名不匹配 surefire 默认规则），需要显式指定：
+ *   mvn test -Dtest=MatchThroughputHarness                                   默认 1万、100万
+ *   mvn test -Dtest=MatchThroughputHarness -Dharness.sizes=10000,1000000,10000000 -DargLine=-Xmx12g
+ *   mvn test -Dtest=MatchThroughputHarness -Dapp.match.engine=inverted          换用倒排索引引擎对比
+ *   mvn test -Dtest=MatchThroughputHarness -Dapp.tree.sharding.enabled=true     按省分片、按需加载
+ * 表A、表B行数相同。千万级需要较大堆，且生成和写入H2本身要数十分钟。
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class MatchThroughputHarness {
+
+    private static final long SEED = 20240601L;
+    private static final int INSERT_BATCH = 10000;
+    private static final String[] STAGES = {"create_run", "load_data", "build_tree", "pipeline", "publish", "total"};
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private MatchJobService matchJobService;
+    @Autowired private MeterRegistry registry;
+    @Autowired private MatchEngine engine;
+
+    @Test
+    void runTiers() {
+        String sizes = System.getProperty("harness.sizes", "10000,1000000");
+        List<String> report = new ArrayList<>();
+        for (String size : sizes.split(",")) {
+            report.add(runTier(Integer.parseInt(size.trim())));
+        }
+        System.out.println("=== 吞吐量压测汇总 ===");
+        report.forEach(System.out::println);
+    }
+
+    private String runTier(int size) {
+        reset();
+        long seedStart = System.currentTimeMillis();
+        seed(size);
+        long seedTime = System.currentTimeMillis() - seedStart;
+
+        Map<String, Double> stagesBefore = stageTotals();
+        System.gc();
+        resetPeakHeap();
+
+        long start = System.nanoTime();
+        MatchJob job = matchJobService.runNow();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long peakHeap = peakHeap();
+
+        Map<String, Double> stagesAfter = stageTotals();
+        StringBuilder stages = new StringBuilder();
+        for (String stage : STAGES) {
+            stages.append(stage).append('=')
+                    .append(Math.round(stagesAfter.get(stage) - stagesBefore.get(stage))).append("ms ");
+        }
+
+        assertEquals(MatchJob.SUCCEEDED, job.getStatus());
+        assertEquals(size, job.getProcessed());
+        double[] accuracy = accuracy(job.getRunId(), size);
+        assertTrue(accuracy[0] > 0.9, "准确率过低: " + accuracy[0]);
+
+        String line = String.format("[%s] 规模 %,d: 生成写入 %dms, 匹配 %dms, %.0f条/秒, 峰值堆 %dMB, "
+                        + "成功 %d, 准确率 %.4f, 召回率 %.4f | %s",
+                engine.getName(), size, seedTime, elapsedMs, size * 1000.0 / Math.max(1, elapsedMs), peakHeap >> 20,
+                job.getSuccessMatch(), accuracy[0], accuracy[1], stages.toString().trim());
+        System.out.println(line);
+        return line;
+    }
+
+    private void reset() {
+        for (String table : new String[]{"table_a", "table_b", "table_c", "table_d", "match_run", "match_checkpoint"}) {
+            jdbcTemplate.execute("TRUNCATE TABLE " + table);
+        }
+    }
+
+    /**
+     * 生成并写入表A（参考集）和表B（带噪声的查询集），ID从1开始与生成器的标准答案一致
+     */
+    private void seed(int size) {
+        SyntheticAddressGenerator generator = new SyntheticAddressGenerator(SEED);
+        List<String> reference = generator.referenceSet(size);
+        insert("INSERT INTO table_a (id, address_a) VALUES (?, ?)", reference);
+        List<String> queries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            queries.add(generator.query(reference).getAddress());
+        }
+        insert("INSERT INTO table_b (id, address_b) VALUES (?, ?)", queries);
+    }
+
+    private void insert(String sql, List<String> addresses) {
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < addresses.size(); i++) {
+            batch.add(new Object[]{(long) i + 1, addresses.get(i)});
+            if (batch.size() == INSERT_BATCH || i == addresses.size() - 1) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 按标准答案统计 {准确率, 召回率}：匹配后重新生成同一份数据得到每条查询地址的正确表A ID，
+     * 这样匹配过程中不必持有标准答案，不影响峰值堆统计
+     */
+    private double[] accuracy(Long runId, int size) {
+        SyntheticAddressGenerator generator = new SyntheticAddressGenerator(SEED);
+        List<String> reference = generator.referenceSet(size);
+        Map<String, Long> truth = new HashMap<>(size * 2);
+        long matchable = 0;
+        for (int i = 0; i < size; i++) {
+            SyntheticAddressGenerator.Query query = generator.query(reference);
+            truth.put(query.getAddress(), query.getExpectedId());
+            if (query.getExpectedId() > 0) {
+                matchable++;
+            }
+        }
+        reference = null;
+
+        long[] counts = new long[2];
+        jdbcTemplate.query("SELECT address_b, a_id FROM table_c WHERE run_id = ?", rs -> {
+            counts[0]++;
+            Long expected = truth.get(rs.getString(1));
+            if (expected != null && expected == rs.getLong(2)) {
+                counts[1]++;
+            }
+        }, runId);
+        return new double[]{
+                counts[0] == 0 ? 0 : counts[1] / (double) counts[0],
+                matchable == 0 ? 0 : counts[1] / (double) matchable
+        };
+    }
+
+    private Map<String, Double> stageTotals() {
+        Map<String, Double> totals = new HashMap<>();
+        for (String stage : STAGES) {
+            Timer timer = registry.find("address.match.stage").tag("stage", stage).timer();
+            totals.put(stage, timer == null ? 0 : timer.totalTime(TimeUnit.MILLISECONDS));
+        }
+        return totals;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * 各堆内存池峰值之和（各池峰值不一定同时出现，略高于实际峰值）
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.addressmatch.support;
+
+import com.example.addressmatch.entity.TableA;
+import com.example.addressmatch.model.AddressTreeSnapshot;
+import com.example.addressmatch.model.OnlineMatchResult;
+import com.example.addressmatch.service.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在线匹配延迟压测：在内存地址树上逐条调用 matchOne，检查 p50/p99 延迟目标。
+ * 计时的查询两两不同且不在预热查询中，每次都不命中匹配结果缓存和解析缓存（冷缓存）；
+ * 查询按生成器的比例混合精确地址、带噪声的变体（缺级、错字、备注）和参考集之外的地址。
+ *
+ * 不在默认测试中运行（类名不匹配 surefire 默认规则），需要显式指定：
+ *   mvn test -Dtest=OnlineLatencyHarness
+ *   mvn test -Dtest=OnlineLatencyHarness -Dharness.table-a=1000000 -Donline.p50-ms=2 -Donline.p99-ms=20
+ */
+class OnlineLatencyHarness {
+
+    private static final long SEED = 20240601L;
+    private static final int WARMUP_REQUESTS = 5000;
+
+    @Test
+    void singleMatchMeetsLatencyTargets() {
+        int tableASize = Integer.getInteger("harness.table-a", 100000);
+        int requests = Integer.getInteger("harness.requests", 20000);
+        double p50Target = Double.parseDouble(System.getProperty("online.p50-ms", "2"));
+        double p99Target = Double.parseDouble(System.getProperty("online.p99-ms", "20"));
+
+        SyntheticAddressGenerator generator = new SyntheticAddressGenerator(SEED);
+        List<String> reference = generator.referenceSet(tableASize);
+        List<TableA> tableA = new ArrayList<>(reference.size());
+        for (int i = 0; i < reference.size(); i++) {
+            TableA address = new TableA();
+            address.setId((long) i + 1);
+            address.setAddressA(reference.get(i));
+            tableA.add(address);
+        }
+
+        Set<String> warmup = new HashSet<>();
+        for (SyntheticAddressGenerator.Query query : generator.querySet(reference, WARMUP_REQUESTS)) {
+            warmup.add(query.getAddress());
+        }
+        Set<String> measured = new LinkedHashSet<>();
+        while (measured.size() < requests) {
+            String address = generator.query(reference).getAddress();
+            if (!warmup.contains(address)) {
+                measured.add(address);
+            }
+        }
+
+        AddressTreeBuilder builder = new AddressTreeBuilder();
+        ReflectionTestUtils.setField(builder, "addressParser", new AddressParserService());
+        ReflectionTestUtils.setField(builder, "shardStore", new TreeShardStore());
+        OnlineMatchService service = service(builder);
+
+        try (AddressTreeSnapshot.Lease ignored = builder.buildAddressTree(tableA)) {
+            // 只预热JIT，预热查询与计时查询不重复
+            for (String address : warmup) {
+                service.matchOne(address, 5);
+            }
+
+            double[] latencies = new double[requests];
+            int matched = 0;
+            int i = 0;
+            for (String address : measured) {
+                long start = System.nanoTime();
+                OnlineMatchResult result = service.matchOne(address, 5);
+                latencies[i++] = (System.nanoTime() - start) / 1_000_000.0;
+                if (result.isMatched()) {
+                    matched++;
+                }
+            }
+            Arrays.sort(latencies);
+            double p50 = latencies[requests / 2];
+            double p99 = latencies[(int) (requests * 0.99)];
+            String summary = String.format("表A %,d 条，冷缓存在线匹配 %,d 次: p50=%.3fms, p99=%.3fms, max=%.3fms, 匹配成功 %d",
+                    tableASize, requests, p50, p99, latencies[requests - 1], matched);
+            System.out.println(summary);
+
+            assertTrue(matched > 0, summary);
+            assertTrue(p50 <= p50Target, "p50 超出目标 " + p50Target + "ms: " + summary);
+            assertTrue(p99 <= p99Target, "p99 超出目标 " + p99Target + "ms: " + summary);
+        }
+    }
+
+    private static OnlineMatchService service(AddressTreeBuilder builder) {
+        MatchMetrics metrics = new MatchMetrics();
+        ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(metrics, "treeBuilder", builder);
+        ReflectionTestUtils.setField(metrics, "slowThresholdMs", 100L);
+        metrics.init();
+
+        MultiGranularityMatcher matcher = new MultiGranularityMatcher();
+        ReflectionTestUtils.setField(matcher, "addressParser", new AddressParserService());
+        ReflectionTestUtils.setField(matcher, "metrics", metrics);
+        ReflectionTestUtils.setField(matcher, "defaultMaxSize", 10000L);
+        ReflectionTestUtils.setField(matcher, "topKLimit", 20);
+        ReflectionTestUtils.setField(matcher, "relaxedMaxEdits", 2);
+        ReflectionTestUtils.setField(matcher, "relaxedBudgetMs", 3L);
+        ReflectionTestUtils.setField(matcher, "relaxedBeamWidth", 256);
+        matcher.initCaches();
+
+        OnlineMatchService service = new OnlineMatchService();
+        ReflectionTestUtils.setField(service, "treeBuilder", builder);
+        ReflectionTestUtils.setField(service, "matcher", matcher);
+        ReflectionTestUtils.setField(service, "defaultTopK", 5);
+        ReflectionTestUtils.setField(service, "maxTopK", 20);
+        ReflectionTestUtils.setField(service, "maxBatchSize", 1000);
+        ReflectionTestUtils.setField(service, "latencyBudgetMs", 50L);
+        return service;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.addressmatch.support;
+
+import lombok.Data;
+
+import java.util.*;
+
+/**
+ * 合成中文地址生成器（测试、压测和基准测试共用）
+ *
+ * 行政层级固定扇出（每省12市、每市10区县、每区县8街道/镇、每街道6社区/村、每社区4条道路），
+ * 各级名称由上级路径哈希出两个字，同一路径总是得到同一名称，因此地址集越大树越深越宽，
+ * 与真实数据一样有大量共享前缀。门牌、楼号、单元、房号随机。
+ *
+ * 参考集（表A）地址互不相同；查询集（表B）由参考地址加噪声得到，记录对应的参考地址序号作为标准答案，
+ * 另按比例混入不在参考集中的地址（标准答案为0）。
+ */
+public class SyntheticAddressGenerator {
+
+    private static final String[] PROVINCES = {
+            "北京市", "天津市", "河北省", "山西省", "内蒙古自治区", "辽宁省", "吉林省", "黑龙江省", "上海市",
+            "江苏省", "浙江省", "安徽省", "福建省", "江西省", "山东省", "河南省", "湖北省", "湖南省", "广东省",
+            "广西壮族自治区", "海南省", "重庆市", "四川省", "贵州省", "云南省", "西藏自治区", "陕西省", "甘肃省",
+            "青海省", "宁夏回族自治区", "新疆维吾尔自治区"
+    };
+    // 省级简称：去掉“省”“市”及自治区的民族名
+    private static final String[] PROVINCE_SHORT = {
+            "北京", "天津", "河北", "山西", "内蒙古", "辽宁", "吉林", "黑龙江", "上海",
+            "江苏", "浙江", "安徽", "福建", "江西", "山东", "河南", "湖北", "湖南", "广东",
+            "广西", "海南", "重庆", "四川", "贵州", "云南", "西藏", "陕西", "甘肃",
+            "青海", "宁夏", "新疆"
+    };
+    private static final String SYLLABLES =
+            "安宝北昌春大德东丰福光广海和河华惠吉嘉江金锦康乐利林龙美明南宁平清庆仁瑞山胜盛顺泰天通文西祥新兴阳永裕长正中";
+    // 常见同音/形近错字
+    private static final String TYPO_FROM = "华安德东丰福光和金康乐林龙明平庆山盛泰文祥新阳永长正中";
+    private static final String TYPO_TO = "化按得冬峰富广合今康勒琳隆名坪青珊胜太闻详心杨勇常政忠";
+    private static final String[] NOTES = {"（近地铁站）", "(东门)", "（物业转交）", "旁边小卖部", "（快递柜）"};
+
+    private static final int CITIES = 12;
+    private static final int DISTRICTS = 10;
+    private static final int STREETS = 8;
+    private static final int COMMUNITIES = 6;
+    private static final int ROADS = 4;
+
+    /**
+     * 查询集噪声，各项为每条查询地址出现该噪声的概率
+     */
+    @Data
+    public static class Noise {
+        // 缺失街道或社区一级
+        private double missingLevel = 0.15;
+        // 省、市使用简称
+        private double abbreviation = 0.15;
+        // 括号备注或附加说明
+        private double note = 0.15;
+        // 道路或社区名中一个错字
+        private double typo = 0.10;
+        // 多余空白
+        private double whitespace = 0.10;
+        // 不在参考集中的查询地址比例
+        private double unmatched = 0.10;
+
+        public static Noise none() {
+            Noise noise = new Noise();
+            noise.setMissingLevel(0);
+            noise.setAbbreviation(0);
+            noise.setNote(0);
+            noise.setTypo(0);
+            noise.setWhitespace(0);
+            noise.setUnmatched(0);
+            return noise;
+        }
+    }
+
+    /**
+     * 查询地址及标准答案（参考地址序号从1开始，与按顺序插入表A得到的自增ID一致；0表示参考集中没有）
+     */
+    @Data
+    public static class Query {
+        private final String address;
+        private final long expectedId;
+    }
+
+    private final Random random;
+    private final Noise noise;
+
+    public SyntheticAddressGenerator(long seed) {
+        this(seed, new Noise());
+    }
+
+    public SyntheticAddressGenerator(long seed, Noise noise) {
+        this.random = new Random(seed);
+        this.noise = noise;
+    }
+
+    /**
+     * 生成互不相同的参考地址
+     */
+    public List<String> referenceSet(int size) {
+        Set<String> seen = new HashSet<>(size * 2);
+        List<String> addresses = new ArrayList<>(size);
+        while (addresses.size() < size) {
+            String address = next();
+            if (seen.add(address)) {
+                addresses.add(address);
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * 随机地址（不保证与已生成的不同）
+     */
+    public String next() {
+        return String.join("", components());
+    }
+
+    /**
+     * 生成一条查询地址：按比例取参考集之外的随机地址，或对随机一条参考地址加噪声
+     */
+    public Query query(List<String> reference) {
+        if (random.nextDouble() < noise.getUnmatched()) {
+            // 参考集之外：门牌号超出生成范围，不会与参考地址相同
+            return new Query(next().replaceFirst("(\\d+)号", "9$1号"), 0);
+        }
+        int index = random.nextInt(reference.size());
+        return new Query(variant(reference.get(index)), index + 1);
+    }
+
+    public List<Query> querySet(List<String> reference, int size) {
+        List<Query> queries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            queries.add(query(reference));
+        }
+        return queries;
+    }
+
+    /**
+     * 对地址加噪声
+     */
+    public String variant(String address) {
+        String result = address;
+        if (random.nextDouble() < noise.getMissingLevel()) {
+            result = random.nextBoolean()
+                    ? result.replaceFirst("[^省市区县]{2}(街道|镇)", "")
+                    : result.replaceFirst("[^镇道]{2}(社区|村)", "");
+        }
+        if (random.nextDouble() < noise.getAbbreviation()) {
+            result = abbreviate(result);
+        }
+        if (random.nextDouble() < noise.getTypo()) {
+            result = typo(result);
+        }
+        if (random.nextDouble() < noise.getNote()) {
+            result = result + NOTES[random.nextInt(NOTES.length)];
+        }
+        if (random.nextDouble() < noise.getWhitespace()) {
+            result = " " + result.replaceFirst("号", "号 ") + " ";
+        }
+        return result;
+    }
+
+    private List<String> components() {
+        int province = random.nextInt(PROVINCES.length);
+        long path = province;
+        List<String> parts = new ArrayList<>(9);
+        parts.add(PROVINCES[province]);
+
+        int city = random.nextInt(CITIES);
+        path = path * 31 + city;
+        parts.add(name(path) + "市");
+
+        int district = random.nextInt(DISTRICTS);
+        path = path * 31 + district;
+        parts.add(name(path) + (district % 3 == 0 ? "县" : "区"));
+
+        int street = random.nextInt(STREETS);
+        path = path * 31 + street;
+        parts.add(name(path) + (street % 4 == 0 ? "镇" : "街道"));
+
+        int community = random.nextInt(COMMUNITIES);
+        path = path * 31 + community;
+        parts.add(name(path) + (community % 3 == 0 ? "村" : "社区"));
+
+        int road = random.nextInt(ROADS);
+        path = path * 31 + road;
+        parts.add(name(path) + (road % 2 == 0 ? "路" : "大道") + (random.nextInt(300) + 1) + "号");
+
+        if (random.nextInt(3) > 0) {
+            parts.add((random.nextInt(30) + 1) + "号楼");
+        }
+        if (random.nextBoolean()) {
+            parts.add((random.nextInt(6) + 1) + "单元");
+            parts.add((random.nextInt(30) + 101) + "室");
+        }
+        return parts;
+    }
+
+    private String abbreviate(String address) {
+        for (int i = 0; i < PROVINCES.length; i++) {
+            if (address.startsWith(PROVINCES[i])) {
+                // 直辖市的“市”只去掉一次，地级市保留
+                return PROVINCE_SHORT[i] + address.substring(PROVINCES[i].length());
+            }
+        }
+        return address;
+    }
+
+    private String typo(String address) {
+        // 只改道路或社区名，省市区名称错字在真实数据中较少
+        int anchor = Math.max(address.indexOf("社区"), address.indexOf("路"));
+        if (anchor < 2) {
+            return address;
+        }
+        char[] chars = address.toCharArray();
+        int position = anchor - 1 - random.nextInt(2);
+        int k = TYPO_FROM.indexOf(chars[position]);
+        if (k < 0) {
+            return address;
+        }
+        chars[position] = TYPO_TO.charAt(k);
+        return new String(chars);
+    }
+
+    private static String name(long path) {
+        long h = path * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        int n = SYLLABLES.length();
+        return new String(new char[]{
+                SYLLABLES.charAt((int) Math.floorMod(h, (long) n)),
+                SYLLABLES.charAt((int) Math.floorMod(h >>> 20, (long) n))
+        });
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.addressmatch.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 提前结束的编辑距离与完整动态规划的差分测试
+ */
+class CommonUtilsTest {
+
+    private static final String CHARS = "东西南北路街1２";
+
+    @Test
+    void editDistanceMatchesFullDynamicProgramming() {
+        Random random = new Random(20261018L);
+        for (int i = 0; i < 20000; i++) {
+            String a = randomString(random, random.nextInt(9));
+            String b = random.nextBoolean() ? randomString(random, random.nextInt(9)) : mutate(random, a);
+            int full = fullEditDistance(a, b);
+            for (int max = 0; max <= 4; max++) {
+                assertEquals(Math.min(full, max + 1), CommonUtils.editDistance(a, b, max),
+                        a + " / " + b + " / " + max);
+            }
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 随机插入、删除、替换一到三个字
+     */
+    private static String mutate(Random random, String s) {
+        StringBuilder sb = new StringBuilder(s);
+        for (int edits = 1 + random.nextInt(3); edits > 0; edits--) {
+            int position = sb.length() == 0 ? 0 : random.nextInt(sb.length());
+            char c = CHARS.charAt(random.nextInt(CHARS.length()));
+            switch (sb.length() == 0 ? 0 : random.nextInt(3)) {
+                case 0:
+                    sb.insert(position, c);
+                    break;
+                case 1:
+                    sb.deleteCharAt(position);
+                    break;
+                default:
+                    sb.setCharAt(position, c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int fullEditDistance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}